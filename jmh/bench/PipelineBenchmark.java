@@ -0,0 +1,185 @@
+package bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import states.State;
+import tweets.LanguageFilter;
+import tweets.RawTweet;
+import tweets.StreamLineReader;
+import tweets.TweetExtractor;
+import tweets.TweetStreamParser;
+import words.WordsToSentimentBuilder;
+import data.StateSentimentAggregator;
+import data.StateToTweetsBuilder;
+import data.Tweet;
+
+/**
+ * Measures each stage of the pipeline separately on a synthetic stream from
+ * {@link SyntheticTweetGenerator}, so that regressions can be attributed to a
+ * stage:
+ * <ul>
+ * <li>{@code parse} - extraction of tweet fields from a line</li>
+ * <li>{@code language} - {@link LanguageFilter#isInEnglish(RawTweet)} with the
+ * prefilter</li>
+ * <li>{@code detector} - the same without the prefilter, so that every tweet
+ * not tagged as English reaches the language detector</li>
+ * <li>{@code geo} - {@link State#getStateOfGeoLocation(double, double)}</li>
+ * <li>{@code location} - {@link StateToTweetsBuilder#determineState(RawTweet)}
+ * of tweets located only by user's profile location</li>
+ * <li>{@code score} - sentiment of a tweet as computed by {@link Tweet}</li>
+ * <li>{@code endToEnd} - streaming of the whole stream into per-state
+ * totals</li>
+ * </ul>
+ * Each invocation of a stage handles the next input of the stage, the inputs
+ * are taken in turn, while {@code endToEnd} handles the whole stream. The
+ * benchmarks are run from the project directory by the {@code jmh} task of
+ * the build, e.g.
+ * {@code ./gradlew jmh -PjmhArgs='PipelineBenchmark.parse -p tweets=10000'}.
+ * 
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PipelineBenchmark {
+
+	/** Number of generated lines of the stream */
+	@Param("100000")
+	int tweets;
+
+	/** File with sentiments of words */
+	@Param("AFINN-111.txt")
+	String lexicon;
+
+	/** Lines of the stream, which aren't deletion notices */
+	private List<String> lines;
+
+	/** Extracted tweets of the lines */
+	private List<RawTweet> extractedTweets;
+
+	/** Extracted tweets in English */
+	private List<RawTweet> englishTweets;
+
+	/** Coordinates of the located tweets */
+	private double[] lats, lngs;
+
+	/** Tweets located only by user's profile location */
+	private List<RawTweet> profileLocatedTweets;
+
+	/** Whole stream in UTF-8 */
+	private byte[] stream;
+
+	/** Language filters with and without the prefilter */
+	private LanguageFilter filter, detector;
+
+	/** Extractor and tweet reused by {@link #parse()} */
+	private final TweetExtractor extractor = new TweetExtractor();
+	private final RawTweet parsedTweet = new RawTweet();
+
+	/** Index of the last input taken by any stage */
+	private int next;
+
+	/**
+	 * Generates the stream and extracts inputs of the stages
+	 */
+	@Setup(Level.Trial)
+	public void prepare() throws Exception {
+		WordsToSentimentBuilder.loadWordsSentiment(new File(lexicon));
+		filter = new LanguageFilter("profiles", true);
+		detector = new LanguageFilter("profiles", false);
+		SyntheticTweetGenerator generator = new SyntheticTweetGenerator(42);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		lines = new ArrayList<String>();
+		extractedTweets = new ArrayList<RawTweet>();
+		englishTweets = new ArrayList<RawTweet>();
+		profileLocatedTweets = new ArrayList<RawTweet>();
+		List<double[]> points = new ArrayList<double[]>();
+		for (int i = 0; i < tweets; i++) {
+			String line = generator.nextLine();
+			bytes.write((line + "\r\n").getBytes("UTF-8"));
+			if (line.startsWith("{\"delete\""))
+				continue;
+			lines.add(line);
+			RawTweet tweet = new RawTweet();
+			extractor.extract(line, tweet);
+			extractedTweets.add(tweet);
+			if (tweet.getCoordinates() != null)
+				points.add(tweet.getCoordinates().getCoordinates());
+			else if (tweet.getPlace() == null && tweet.getUser().getLocation() != null)
+				profileLocatedTweets.add(tweet);
+			if (filter.isInEnglish(tweet))
+				englishTweets.add(tweet);
+		}
+		stream = bytes.toByteArray();
+		lats = new double[points.size()];
+		lngs = new double[points.size()];
+		for (int i = 0; i < points.size(); i++) {
+			lngs[i] = points.get(i)[0];
+			lats[i] = points.get(i)[1];
+		}
+	}
+
+	@Benchmark
+	public int parse() {
+		extractor.extract(lines.get(next(lines.size())), parsedTweet);
+		return parsedTweet.getText().length();
+	}
+
+	@Benchmark
+	public boolean language() {
+		return filter.isInEnglish(extractedTweets.get(next(extractedTweets.size())));
+	}
+
+	@Benchmark
+	public boolean detector() {
+		return detector.isInEnglish(extractedTweets.get(next(extractedTweets.size())));
+	}
+
+	@Benchmark
+	public State geo() {
+		int i = next(lats.length);
+		return State.getStateOfGeoLocation(lats[i], lngs[i]);
+	}
+
+	@Benchmark
+	public State location() {
+		return StateToTweetsBuilder.determineState(profileLocatedTweets.get(next(profileLocatedTweets.size())));
+	}
+
+	@Benchmark
+	public double score() {
+		return new Tweet(State.Undefined, englishTweets.get(next(englishTweets.size()))).getSentiment();
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void endToEnd(Blackhole blackhole) throws Exception {
+		StateSentimentAggregator aggregator = new StateSentimentAggregator();
+		new TweetStreamParser(filter).parse(new StreamLineReader(new ByteArrayInputStream(stream)), aggregator);
+		blackhole.consume(aggregator.getStateToSentimentMap());
+	}
+
+	/**
+	 * Returns index of the next input of a stage with the given number of
+	 * inputs
+	 */
+	private int next(int size) {
+		if (++next >= size)
+			next = 0;
+		return next;
+	}
+}
@@ -0,0 +1,88 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import states.State;
+import states.StateRaster;
+
+/**
+ * Compares {@link State#getStateOfGeoLocation(double, double)} lookups
+ * through the spatial index and through the raster of state boundaries with
+ * the linear scan over all states, on random points in the bounding box of
+ * the contiguous states. The setup checks that the index and the raster give
+ * the same states as the scan for all points.
+ * 
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StateLookupBenchmark {
+
+	/** Bounding box of the contiguous states, where most of the tweets are */
+	private static final double MIN_LAT = 24.5, MAX_LAT = 49.5, MIN_LNG = -125, MAX_LNG = -66.5;
+
+	/** Lookup measured: linear scan, spatial index or raster */
+	@Param({ "scan", "index", "raster" })
+	String lookup;
+
+	/** Number of random points */
+	@Param("1000000")
+	int points;
+
+	/** Resolution of the raster */
+	@Param("20")
+	int cellsPerDegree;
+
+	/** Coordinates of the points */
+	private double[] lats, lngs;
+
+	/** Index of the last looked up point */
+	private int next;
+
+	/**
+	 * Generates the points, sets up the lookup and checks it against the scan
+	 */
+	@Setup(Level.Trial)
+	public void prepare() {
+		Random random = new Random(42);
+		lats = new double[points];
+		lngs = new double[points];
+		for (int i = 0; i < points; i++) {
+			lats[i] = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+			lngs[i] = MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG);
+		}
+		State.setRaster(lookup.equals("raster") ? StateRaster.build(cellsPerDegree) : null);
+		int mismatches = 0;
+		for (int i = 0; i < points; i++) {
+			if (State.getStateOfGeoLocation(lats[i], lngs[i]) != State.getStateOfGeoLocationByScan(lats[i],
+					lngs[i]))
+				mismatches++;
+		}
+		if (mismatches != 0)
+			throw new IllegalStateException(lookup + " differs from the scan for " + mismatches + " points");
+	}
+
+	@TearDown(Level.Trial)
+	public void reset() {
+		State.setRaster(null);
+	}
+
+	@Benchmark
+	public State lookup() {
+		if (++next >= points)
+			next = 0;
+		return lookup.equals("scan") ? State.getStateOfGeoLocationByScan(lats[next], lngs[next]) : State
+				.getStateOfGeoLocation(lats[next], lngs[next]);
+	}
+}
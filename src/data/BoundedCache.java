@@ -0,0 +1,91 @@
+package data;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The class {@code BoundedCache} is a bounded, thread-safe cache for values,
+ * which are cheap to compute again, such as states of locations. Lookups read
+ * a {@link ConcurrentHashMap} and neither lock nor write shared memory, so
+ * threads looking up the same popular keys don't slow each other down.
+ * Eviction is approximate: when the cache is full, an eighth of its entries
+ * in the order of the map is removed, which is no order of use, but popular
+ * keys are put back at their next lookup.
+ * 
+ * @param <K>
+ *            type of keys
+ * @param <V>
+ *            type of values
+ */
+public class BoundedCache<K, V> {
+
+	/** Share of entries removed when the cache is full */
+	private static final int EVICTED_SHARE = 8;
+
+	/** Largest number of entries */
+	private final int capacity;
+
+	/** Cached entries */
+	private final ConcurrentHashMap<K, V> map;
+
+	/** Indicates whether some thread is removing entries */
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	/**
+	 * Creates cache of the given capacity
+	 * 
+	 * @param capacity
+	 *            largest number of entries
+	 */
+	public BoundedCache(int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		this.capacity = capacity;
+		map = new ConcurrentHashMap<K, V>(capacity);
+	}
+
+	/**
+	 * Returns value of the key
+	 * 
+	 * @param key
+	 *            key
+	 * @return value or {@code null} if the key isn't cached
+	 */
+	public V get(K key) {
+		return map.get(key);
+	}
+
+	/**
+	 * Caches value of the key removing some entries first if the cache is full
+	 * 
+	 * @param key
+	 *            key
+	 * @param value
+	 *            value, not {@code null}
+	 */
+	public void put(K key, V value) {
+		if (map.size() >= capacity && evicting.compareAndSet(false, true)) {
+			try {
+				int evicted = Math.max(1, capacity / EVICTED_SHARE);
+				Iterator<K> keys = map.keySet().iterator();
+				while (evicted-- > 0 && keys.hasNext()) {
+					keys.next();
+					keys.remove();
+				}
+			} finally {
+				evicting.set(false);
+			}
+		}
+		map.put(key, value);
+	}
+
+	/**
+	 * Returns number of cached entries
+	 * 
+	 * @return number of entries
+	 */
+	public int size() {
+		return map.size();
+	}
+}
@@ -0,0 +1,334 @@
+package data;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import states.State;
+import words.BatchScorer;
+import words.Lexicon;
+import words.LexiconScorer;
+import words.LexiconTrie;
+import words.SentimentScorer;
+import words.TokenBatch;
+import words.TokenInterner;
+
+/**
+ * The class {@code ColumnStore} reads English tweets exported by
+ * {@link ColumnStoreWriter} and rescores them with any lexicon or several
+ * {@link BatchScorer}s at once, which takes a pass over a few arrays instead
+ * of parsing the stream, detecting language and resolving locations again.
+ * <p>
+ * A store is a directory with a file for each column. All numbers are
+ * little-endian and the files are memory-mapped, so opening a store reads
+ * only its header and dictionary. The files are:
+ * 
+ * <pre>
+ * header       int magic, version; long tweets, tokens; int dictionary size
+ * states       byte   ordinal of the state of each tweet
+ * timestamps   long   time of each tweet in milliseconds or 0
+ * coordinates  float  latitude and longitude of each tweet or NaN
+ * offsets      long   index of the first token of each tweet (tweets + 1)
+ * tokens       int    ids of normalized tokens of all tweets
+ * dictionary          UTF-8 text with a token per line in the order of ids
+ * </pre>
+ * 
+ * The store is thread-safe.
+ * 
+ */
+public class ColumnStore {
+
+	/** Magic number of the header */
+	static final int MAGIC = 0x54434F4C;
+
+	/** Version of the store format */
+	static final int VERSION = 1;
+
+	/** Names of the files of the store */
+	static final String HEADER_FILE = "header", STATES_FILE = "states", TIMESTAMPS_FILE = "timestamps",
+			COORDINATES_FILE = "coordinates", OFFSETS_FILE = "offsets", TOKENS_FILE = "tokens",
+			DICTIONARY_FILE = "dictionary";
+
+	/** Number of bits of the offset within a mapped segment of a column */
+	private static final int SEGMENT_BITS = 30;
+
+	/** Number of tweets scored at once */
+	private static final int BATCH_SIZE = 4096;
+
+	/** All states in the order of ordinals */
+	private static final State[] STATES = State.values();
+
+	/** Number of tweets */
+	private final long tweetsCount;
+
+	/** Number of tokens of all tweets */
+	private final long tokensCount;
+
+	/** Columns of the store */
+	private final Column states, timestamps, coordinates, offsets, tokens;
+
+	/** Tokens in the order of their ids */
+	private final String[] dictionary;
+
+	/** Interner of the dictionary, which is built on demand */
+	private TokenInterner interner;
+
+	/**
+	 * Column mapped in segments, since a buffer can't map more than 2 GB
+	 */
+	private static class Column {
+		/** Mapped segments of {@code 1 << SEGMENT_BITS} bytes */
+		private final ByteBuffer[] segments;
+
+		/**
+		 * Maps column file, which must have the given size
+		 */
+		Column(File file, long size) throws IOException {
+			RandomAccessFile raf = new RandomAccessFile(file, "r");
+			try {
+				FileChannel channel = raf.getChannel();
+				if (channel.size() != size)
+					throw new IOException(file + " has " + channel.size() + " bytes instead of " + size);
+				segments = new ByteBuffer[(int) ((size >>> SEGMENT_BITS) + 1)];
+				for (int i = 0; i < segments.length; i++) {
+					long start = (long) i << SEGMENT_BITS;
+					segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+							Math.min(size - start, 1L << SEGMENT_BITS)).order(ByteOrder.LITTLE_ENDIAN);
+				}
+			} finally {
+				// the mapping stays valid after the file is closed
+				raf.close();
+			}
+		}
+
+		byte getByte(long index) {
+			return segment(index).get(offset(index));
+		}
+
+		int getInt(long index) {
+			return segment(index << 2).getInt(offset(index << 2));
+		}
+
+		long getLong(long index) {
+			return segment(index << 3).getLong(offset(index << 3));
+		}
+
+		float getFloat(long index) {
+			return segment(index << 2).getFloat(offset(index << 2));
+		}
+
+		// values never straddle segments, since their sizes divide the
+		// segment size
+
+		private ByteBuffer segment(long position) {
+			return segments[(int) (position >>> SEGMENT_BITS)];
+		}
+
+		private static int offset(long position) {
+			return (int) position & (1 << SEGMENT_BITS) - 1;
+		}
+	}
+
+	/**
+	 * Opens store written by {@link ColumnStoreWriter}
+	 * 
+	 * @param directory
+	 *            directory of the store
+	 * @throws IOException
+	 *             if the store can't be read, is incomplete or corrupt
+	 */
+	public ColumnStore(File directory) throws IOException {
+		File headerFile = new File(directory, HEADER_FILE);
+		if (!headerFile.exists())
+			throw new IOException(directory + " isn't a complete column store");
+		Column header = new Column(headerFile, 28);
+		if (header.getInt(0) != MAGIC)
+			throw new IOException(directory + " isn't a column store");
+		if (header.getInt(1) != VERSION)
+			throw new IOException("Unsupported version of " + directory + ": " + header.getInt(1));
+		tweetsCount = header.getLong(1);
+		tokensCount = header.getLong(2);
+		int dictionarySize = header.getInt(6);
+		states = new Column(new File(directory, STATES_FILE), tweetsCount);
+		timestamps = new Column(new File(directory, TIMESTAMPS_FILE), 8 * tweetsCount);
+		coordinates = new Column(new File(directory, COORDINATES_FILE), 8 * tweetsCount);
+		offsets = new Column(new File(directory, OFFSETS_FILE), 8 * (tweetsCount + 1));
+		tokens = new Column(new File(directory, TOKENS_FILE), 4 * tokensCount);
+		dictionary = new String[dictionarySize];
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(new File(directory,
+				DICTIONARY_FILE)), "UTF-8"));
+		try {
+			for (int i = 0; i < dictionarySize; i++) {
+				dictionary[i] = in.readLine();
+				if (dictionary[i] == null)
+					throw new IOException("Dictionary of " + directory + " is truncated");
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Returns number of tweets in the store
+	 * 
+	 * @return number of tweets
+	 */
+	public long size() {
+		return tweetsCount;
+	}
+
+	public State getState(long index) {
+		return STATES[states.getByte(index)];
+	}
+
+	/**
+	 * Returns time of the tweet
+	 * 
+	 * @param index
+	 *            index of the tweet
+	 * @return time in milliseconds or 0 if it is unknown
+	 */
+	public long getTimestamp(long index) {
+		return timestamps.getLong(index);
+	}
+
+	/**
+	 * Returns latitude of the tweet
+	 * 
+	 * @param index
+	 *            index of the tweet
+	 * @return latitude or NaN if the tweet has no coordinates
+	 */
+	public float getLatitude(long index) {
+		return coordinates.getFloat(2 * index);
+	}
+
+	/**
+	 * Returns longitude of the tweet
+	 * 
+	 * @param index
+	 *            index of the tweet
+	 * @return longitude or NaN if the tweet has no coordinates
+	 */
+	public float getLongitude(long index) {
+		return coordinates.getFloat(2 * index + 1);
+	}
+
+	/**
+	 * Returns normalized tokens of the tweet
+	 * 
+	 * @param index
+	 *            index of the tweet
+	 * @return tokens
+	 */
+	public String[] getTokens(long index) {
+		long start = offsets.getLong(index);
+		String[] result = new String[(int) (offsets.getLong(index + 1) - start)];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = dictionary[tokens.getInt(start + i)];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns interner, which gives ids to tokens of the dictionary of the
+	 * store, building it on the first call. Scorers passed to
+	 * {@link #rescore(List)} must be created for this interner.
+	 * 
+	 * @return interner of the dictionary
+	 */
+	public synchronized TokenInterner getInterner() {
+		if (interner == null)
+			interner = new TokenInterner(dictionary);
+		return interner;
+	}
+
+	/**
+	 * Scores all tweets with the lexicon taking tokens in pairs, like
+	 * {@link SentimentScorer#SentimentScorer(Lexicon)}, and aggregates
+	 * sentiments of meaningful tweets by state
+	 * 
+	 * @param lexicon
+	 *            lexicon with sentiments of words and phrases
+	 * @return per-state totals
+	 */
+	public StateSentimentAggregator rescore(Lexicon lexicon) {
+		return rescore(Collections.singletonList(new LexiconScorer(lexicon, getInterner()))).get(0);
+	}
+
+	/**
+	 * Scores all tweets with each of the scorers in one pass over the store
+	 * and aggregates sentiments of meaningful tweets by state
+	 * 
+	 * @param scorers
+	 *            scorers created for the interner returned by
+	 *            {@link #getInterner()}
+	 * @return per-state totals of each scorer in the order of scorers
+	 */
+	public List<StateSentimentAggregator> rescore(List<? extends BatchScorer> scorers) {
+		List<StateSentimentAggregator> aggregators = new ArrayList<StateSentimentAggregator>();
+		for (int k = 0; k < scorers.size(); k++) {
+			aggregators.add(new StateSentimentAggregator());
+		}
+		TokenBatch batch = new TokenBatch(getInterner(), BATCH_SIZE);
+		int[] sentiments = new int[BATCH_SIZE], arousals = new int[BATCH_SIZE];
+		long first = 0;
+		long start = offsets.getLong(0);
+		for (long i = 0; i < tweetsCount; i++) {
+			long end = offsets.getLong(i + 1);
+			for (long t = start; t < end; t++) {
+				// ids of the interner are indices of the dictionary plus one
+				batch.addToken(tokens.getInt(t) + 1);
+			}
+			batch.endText();
+			start = end;
+			if (!batch.isFull() && i + 1 < tweetsCount)
+				continue;
+			for (int k = 0; k < scorers.size(); k++) {
+				scorers.get(k).score(batch, sentiments, arousals);
+				for (int j = 0; j < batch.size(); j++) {
+					if (arousals[j] != 0)
+						aggregators.get(k).add(getState(first + j), sentiments[j]);
+				}
+			}
+			first = i + 1;
+			batch.clear();
+		}
+		return aggregators;
+	}
+
+	/**
+	 * Scores all tweets matching words and phrases of any length, like
+	 * {@link SentimentScorer#SentimentScorer(LexiconTrie)}, and aggregates
+	 * sentiments of meaningful tweets by state
+	 * 
+	 * @param trie
+	 *            trie over lexicon with sentiments of words and phrases
+	 * @return per-state totals
+	 */
+	public StateSentimentAggregator rescore(LexiconTrie trie) {
+		SentimentScorer scorer = new SentimentScorer(trie);
+		StateSentimentAggregator aggregator = new StateSentimentAggregator();
+		StringBuilder text = new StringBuilder();
+		for (long i = 0; i < tweetsCount; i++) {
+			// normalized tokens are normalized again without changes
+			text.setLength(0);
+			for (long t = offsets.getLong(i); t < offsets.getLong(i + 1); t++) {
+				text.append(dictionary[tokens.getInt(t)]).append(' ');
+			}
+			int sentiment = scorer.score(text.toString());
+			if (scorer.getArousal() != 0)
+				aggregator.add(getState(i), sentiment);
+		}
+		return aggregator;
+	}
+}
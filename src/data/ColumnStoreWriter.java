@@ -0,0 +1,230 @@
+package data;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+import states.State;
+import tweets.RawTweet;
+import tweets.RawTweetHandler;
+import words.SentimentScorer;
+
+/**
+ * The class {@code ColumnStoreWriter} exports English tweets with their states
+ * into a {@link ColumnStore}, so that they can be rescored later without
+ * parsing, language detection and geolocation. Texts are stored as ids of
+ * normalized tokens in a dictionary, so the store is independent of the
+ * lexicon. Links are unique to almost every tweet, so they are all stored as
+ * the token {@value #LINK_TOKEN}, which isn't a word of a lexicon, and the
+ * dictionary grows only with words. The writer isn't thread-safe.
+ * <p>
+ * The store is complete only after {@link #close()}, which writes its header
+ * last.
+ * 
+ */
+public class ColumnStoreWriter implements RawTweetHandler {
+
+	/** Token, which stands for every link */
+	private static final String LINK_TOKEN = "http";
+
+	/** Directory of the store */
+	private final File directory;
+
+	/** Columns of the store */
+	private final ColumnOutput states, timestamps, coordinates, offsets, tokens;
+
+	/** Mapping from token to its id */
+	private final Map<String, Integer> tokenIds = new HashMap<String, Integer>();
+
+	/** Tokens in the order of their ids */
+	private final List<String> dictionary = new ArrayList<String>();
+
+	/** Number of written tweets */
+	private long tweetsCount;
+
+	/** Number of written tokens */
+	private long tokensCount;
+
+	/**
+	 * Creates store in the directory, replacing the store it may contain
+	 * 
+	 * @param directory
+	 *            directory of the store, which is created if necessary
+	 * @throws IOException
+	 *             if the store can't be created
+	 */
+	public ColumnStoreWriter(File directory) throws IOException {
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException("Can't create directory " + directory);
+		this.directory = directory;
+		File header = new File(directory, ColumnStore.HEADER_FILE);
+		if (header.exists() && !header.delete())
+			throw new IOException("Can't replace " + header);
+		states = new ColumnOutput(new File(directory, ColumnStore.STATES_FILE));
+		timestamps = new ColumnOutput(new File(directory, ColumnStore.TIMESTAMPS_FILE));
+		coordinates = new ColumnOutput(new File(directory, ColumnStore.COORDINATES_FILE));
+		offsets = new ColumnOutput(new File(directory, ColumnStore.OFFSETS_FILE));
+		tokens = new ColumnOutput(new File(directory, ColumnStore.TOKENS_FILE));
+		offsets.putLong(0);
+	}
+
+	/**
+	 * Output of a column, which buffers values in little-endian order
+	 */
+	private static class ColumnOutput {
+		/** Channel of the column file */
+		private final FileChannel channel;
+
+		/** Buffer of values not written yet */
+		private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+		ColumnOutput(File file) throws IOException {
+			channel = new FileOutputStream(file).getChannel();
+		}
+
+		void putByte(byte value) throws IOException {
+			ensureRemaining(1);
+			buffer.put(value);
+		}
+
+		void putInt(int value) throws IOException {
+			ensureRemaining(4);
+			buffer.putInt(value);
+		}
+
+		void putLong(long value) throws IOException {
+			ensureRemaining(8);
+			buffer.putLong(value);
+		}
+
+		void putFloat(float value) throws IOException {
+			ensureRemaining(4);
+			buffer.putFloat(value);
+		}
+
+		private void ensureRemaining(int bytes) throws IOException {
+			if (buffer.remaining() < bytes)
+				flush();
+		}
+
+		void flush() throws IOException {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+
+		void close() throws IOException {
+			try {
+				flush();
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Writes the tweet, its state, timestamp, coordinates and tokens
+	 * 
+	 * @throws IllegalStateException
+	 *             if the tweet can't be written
+	 */
+	@Override
+	public void handle(RawTweet tweet) {
+		State state = StateToTweetsBuilder.determineState(tweet);
+		try {
+			states.putByte((byte) state.ordinal());
+			timestamps.putLong(tweet.getTimestampMillis());
+			double[] point = tweet.getCoordinates() != null ? tweet.getCoordinates().getCoordinates() : null;
+			if (point != null && point.length == 2) {
+				coordinates.putFloat((float) point[1]);
+				coordinates.putFloat((float) point[0]);
+			} else {
+				coordinates.putFloat(Float.NaN);
+				coordinates.putFloat(Float.NaN);
+			}
+			if (tweet.getText() != null) {
+				StringTokenizer tokenizer = new StringTokenizer(SentimentScorer.normalizeText(tweet.getText()));
+				while (tokenizer.hasMoreTokens()) {
+					tokens.putInt(getTokenId(tokenizer.nextToken()));
+					tokensCount++;
+				}
+			}
+			offsets.putLong(tokensCount);
+			tweetsCount++;
+		} catch (IOException e) {
+			throw new IllegalStateException("Can't write to " + directory, e);
+		}
+	}
+
+	private int getTokenId(String token) {
+		// a normalized link, such as "httptcoabc", is longer than "https"
+		if (token.startsWith(LINK_TOKEN) && token.length() > "https".length())
+			token = LINK_TOKEN;
+		Integer id = tokenIds.get(token);
+		if (id == null) {
+			id = dictionary.size();
+			tokenIds.put(token, id);
+			dictionary.add(token);
+		}
+		return id;
+	}
+
+	/**
+	 * Returns number of written tweets
+	 * 
+	 * @return number of tweets
+	 */
+	public long getTweetsCount() {
+		return tweetsCount;
+	}
+
+	/**
+	 * Writes the rest of columns, the dictionary and the header, which makes
+	 * the store complete
+	 * 
+	 * @throws IOException
+	 *             if the store can't be written
+	 */
+	public void close() throws IOException {
+		states.close();
+		timestamps.close();
+		coordinates.close();
+		offsets.close();
+		tokens.close();
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(directory,
+				ColumnStore.DICTIONARY_FILE)), "UTF-8"));
+		try {
+			for (String token : dictionary) {
+				out.write(token);
+				out.write('\n');
+			}
+		} finally {
+			out.close();
+		}
+		ColumnOutput header = new ColumnOutput(new File(directory, ColumnStore.HEADER_FILE + ".tmp"));
+		header.putInt(ColumnStore.MAGIC);
+		header.putInt(ColumnStore.VERSION);
+		header.putLong(tweetsCount);
+		header.putLong(tokensCount);
+		header.putInt(dictionary.size());
+		header.close();
+		Files.move(new File(directory, ColumnStore.HEADER_FILE + ".tmp").toPath(), new File(directory,
+				ColumnStore.HEADER_FILE).toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+}
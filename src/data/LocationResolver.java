@@ -0,0 +1,263 @@
+package data;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import states.State;
+
+/**
+ * The class {@code LocationResolver} determines the state mentioned in a
+ * free-form location, such as the location of user's profile. Locations are
+ * split into lower-cased tokens of letters and digits, which are matched in a
+ * single pass against an index of state names ("new york", as well as
+ * "newyork" matched by the old lookup), major cities and their nicknames
+ * ("los angeles", "nyc"). A state abbreviation is recognized
+ * only when it is written as a separate token after a comma or at the end of
+ * the location ("Boston, MA", "I love NY"), and in lower case only after a
+ * comma at the end, so that words like "in" or "or" aren't taken for states.
+ * <p>
+ * An abbreviation after a comma wins over names, otherwise the longest
+ * matched name wins and a state name wins over a city of the same length.
+ * Names mapped to no state, such as "Washington DC", hide shorter matches
+ * inside them.
+ * <p>
+ * Results are cached by raw location, since the same locations occur in many
+ * tweets.
+ * 
+ */
+public class LocationResolver {
+
+	/** File with cities, one per line with the state abbreviation last */
+	public static final String citiesFile = "city-state.txt";
+
+	/** Number of cached locations */
+	private static final int CACHE_CAPACITY = 1 << 16;
+
+	/** Kinds of names in the order of priority */
+	private static final int CITY = 1, STATE_NAME = 2;
+
+	/** Names indexed by their first token */
+	private final Map<String, List<Name>> index = new HashMap<String, List<Name>>();
+
+	/** Cache of resolved locations */
+	private final BoundedCache<String, State> cache = new BoundedCache<String, State>(CACHE_CAPACITY);
+
+	/**
+	 * Name of a state or a city
+	 */
+	private static class Name {
+		/** Tokens of the name except the first one */
+		final String[] rest;
+
+		/** State of the name, Undefined for names outside of the states */
+		final State state;
+
+		/** Kind of the name */
+		final int kind;
+
+		Name(String[] rest, State state, int kind) {
+			this.rest = rest;
+			this.state = state;
+			this.kind = kind;
+		}
+	}
+
+	/**
+	 * Creates resolver of state names, abbreviations and cities of the given
+	 * file
+	 * 
+	 * @param cities
+	 *            file with cities, or {@code null} to resolve state names and
+	 *            abbreviations only
+	 * @throws FileNotFoundException
+	 *             if the file can't be found
+	 */
+	public LocationResolver(File cities) throws FileNotFoundException {
+		for (State state : State.values()) {
+			if (state != State.Undefined) {
+				// both "New York" and "NewYork"
+				addName(state.name().replaceAll("(?<=[a-z])(?=[A-Z])", " "), state, STATE_NAME);
+				addName(state.name(), state, STATE_NAME);
+			}
+		}
+		if (cities != null) {
+			Scanner scn = new Scanner(cities, "UTF-8");
+			try {
+				while (scn.hasNextLine()) {
+					String line = scn.nextLine().trim();
+					int separator = Math.max(line.lastIndexOf('\t'), line.lastIndexOf(' '));
+					if (separator < 0)
+						continue;
+					String abbreviation = line.substring(separator + 1);
+					State state = abbreviation.equals("-") ? State.Undefined : State
+							.abbreviationToState(abbreviation);
+					if (state == null)
+						throw new IllegalArgumentException("Unknown state of city: " + line);
+					addName(line.substring(0, separator), state, CITY);
+				}
+			} finally {
+				scn.close();
+			}
+		}
+	}
+
+	/**
+	 * Holder of the default resolver, which is created on the first use
+	 */
+	private static class DefaultResolver {
+		private static final LocationResolver instance = create();
+
+		private static LocationResolver create() {
+			try {
+				return new LocationResolver(new File(citiesFile));
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+				try {
+					return new LocationResolver(null);
+				} catch (FileNotFoundException impossible) {
+					throw new IllegalStateException(impossible);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns resolver of state names, abbreviations and cities of
+	 * {@value #citiesFile}, which is created on the first use
+	 * 
+	 * @return default resolver
+	 */
+	public static LocationResolver getDefault() {
+		return DefaultResolver.instance;
+	}
+
+	private void addName(String name, State state, int kind) {
+		List<String> tokens = tokenize(name, null, null);
+		if (tokens.isEmpty())
+			return;
+		List<Name> names = index.get(tokens.get(0));
+		if (names == null) {
+			names = new ArrayList<Name>(1);
+			index.put(tokens.get(0), names);
+		}
+		for (Name existing : names) {
+			// the first of equal names wins, e.g. the largest of cities
+			if (existing.kind == kind && existing.rest.length == tokens.size() - 1
+					&& tokens.subList(1, tokens.size()).equals(Arrays.asList(existing.rest)))
+				return;
+		}
+		names.add(new Name(tokens.subList(1, tokens.size()).toArray(new String[tokens.size() - 1]), state, kind));
+	}
+
+	/**
+	 * Splits the string into lower-cased tokens of letters and digits
+	 * 
+	 * @param s
+	 *            string to be split
+	 * @param original
+	 *            if not {@code null}, receives tokens in their original case
+	 * @param afterComma
+	 *            if not {@code null}, receives whether a comma precedes each
+	 *            token
+	 * @return tokens
+	 */
+	private static List<String> tokenize(String s, List<String> original, List<Boolean> afterComma) {
+		List<String> tokens = new ArrayList<String>();
+		boolean comma = false;
+		int start = -1;
+		for (int i = 0; i <= s.length(); i++) {
+			char c = i < s.length() ? s.charAt(i) : ' ';
+			if (Character.isLetterOrDigit(c)) {
+				if (start < 0)
+					start = i;
+				continue;
+			}
+			if (start >= 0) {
+				String token = s.substring(start, i);
+				tokens.add(token.toLowerCase());
+				if (original != null)
+					original.add(token);
+				if (afterComma != null)
+					afterComma.add(comma);
+				comma = false;
+				start = -1;
+			}
+			if (c == ',')
+				comma = true;
+		}
+		return tokens;
+	}
+
+	/**
+	 * Returns the state mentioned in the location
+	 * 
+	 * @param location
+	 *            free-form location
+	 * @return mentioned state or {@code State.Undefined}
+	 */
+	public State resolve(String location) {
+		State state = cache.get(location);
+		if (state == null) {
+			state = resolveUncached(location);
+			cache.put(location, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Does the same as {@link #resolve(String)} without the cache
+	 * 
+	 * @param location
+	 *            free-form location
+	 * @return mentioned state or {@code State.Undefined}
+	 */
+	State resolveUncached(String location) {
+		List<String> original = new ArrayList<String>();
+		List<Boolean> afterComma = new ArrayList<Boolean>();
+		List<String> tokens = tokenize(location, original, afterComma);
+		int last = tokens.size() - 1;
+
+		State abbreviated = null;
+		Name best = null;
+		int bestLength = 0;
+		for (int i = 0; i < tokens.size(); i++) {
+			String token = original.get(i);
+			if (abbreviated == null && token.length() == 2) {
+				boolean upperCase = Character.isUpperCase(token.charAt(0)) && Character.isUpperCase(token.charAt(1));
+				boolean comma = afterComma.get(i);
+				if (upperCase && (comma || i == last) || comma && i == last) {
+					State state = State.abbreviationToState(token.toUpperCase());
+					if (state != null && comma)
+						return state;
+					abbreviated = state;
+				}
+			}
+			List<Name> names = index.get(tokens.get(i));
+			if (names == null)
+				continue;
+			for (Name name : names) {
+				int length = name.rest.length + 1;
+				if (i + length > tokens.size() || length < bestLength
+						|| length == bestLength && name.kind <= best.kind)
+					continue;
+				boolean matches = true;
+				for (int j = 0; j < name.rest.length && matches; j++) {
+					matches = name.rest[j].equals(tokens.get(i + 1 + j));
+				}
+				if (matches) {
+					best = name;
+					bestLength = length;
+				}
+			}
+		}
+		if (best != null)
+			return best.state;
+		return abbreviated != null ? abbreviated : State.Undefined;
+	}
+}
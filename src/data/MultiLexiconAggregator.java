@@ -0,0 +1,113 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import states.State;
+import tweets.RawTweet;
+import tweets.RawTweetHandler;
+import words.BatchScorer;
+import words.Lexicon;
+import words.LexiconScorer;
+import words.TokenBatch;
+import words.TokenInterner;
+
+/**
+ * The {@code MultiLexiconAggregator} class scores every tweet with several
+ * scorers, for example with different lexicons, and keeps per-state totals
+ * for each of them, so that lexicons can be compared on one pass over the
+ * stream. Tweets are collected into batches of token ids, which are
+ * tokenized once and scored by each {@link BatchScorer} in turn. The
+ * aggregator isn't thread-safe.
+ * 
+ */
+public class MultiLexiconAggregator implements RawTweetHandler {
+
+	/** Number of tweets in a batch */
+	private static final int BATCH_SIZE = 1024;
+
+	/** Scorers of tweets */
+	private final List<? extends BatchScorer> scorers;
+
+	/** Per-state totals of each scorer */
+	private final List<StateSentimentAggregator> aggregators = new ArrayList<StateSentimentAggregator>();
+
+	/** Batch of tweets not scored yet */
+	private final TokenBatch batch;
+
+	/** States of tweets of the batch */
+	private final State[] states = new State[BATCH_SIZE];
+
+	/** Sentiments and arousals of tweets of the batch */
+	private final int[] sentiments = new int[BATCH_SIZE], arousals = new int[BATCH_SIZE];
+
+	/**
+	 * Creates aggregator, which scores tweets with the scorers
+	 * 
+	 * @param interner
+	 *            interner giving ids to tokens, the one the scorers were
+	 *            created for
+	 * @param scorers
+	 *            scorers of tweets
+	 */
+	public MultiLexiconAggregator(TokenInterner interner, List<? extends BatchScorer> scorers) {
+		this.scorers = scorers;
+		batch = new TokenBatch(interner, BATCH_SIZE);
+		for (int i = 0; i < scorers.size(); i++) {
+			aggregators.add(new StateSentimentAggregator());
+		}
+	}
+
+	/**
+	 * Creates aggregator, which scores tweets with each of the lexicons taking
+	 * tokens in pairs
+	 * 
+	 * @param lexicons
+	 *            lexicons with sentiments of words and phrases
+	 * @return aggregator
+	 */
+	public static MultiLexiconAggregator forLexicons(List<Lexicon> lexicons) {
+		TokenInterner interner = TokenInterner.forLexicons(lexicons);
+		List<LexiconScorer> scorers = new ArrayList<LexiconScorer>();
+		for (Lexicon lexicon : lexicons) {
+			scorers.add(new LexiconScorer(lexicon, interner));
+		}
+		return new MultiLexiconAggregator(interner, scorers);
+	}
+
+	@Override
+	public void handle(RawTweet tweet) {
+		states[batch.size()] = StateToTweetsBuilder.determineState(tweet);
+		batch.add(tweet.getText());
+		if (batch.isFull())
+			flush();
+	}
+
+	/**
+	 * Scores the collected tweets with every scorer and adds meaningful ones to
+	 * the totals
+	 */
+	private void flush() {
+		for (int k = 0; k < scorers.size(); k++) {
+			scorers.get(k).score(batch, sentiments, arousals);
+			StateSentimentAggregator aggregator = aggregators.get(k);
+			for (int i = 0; i < batch.size(); i++) {
+				if (arousals[i] != 0)
+					aggregator.add(states[i], sentiments[i]);
+			}
+		}
+		batch.clear();
+	}
+
+	/**
+	 * Returns per-state totals of each scorer in the order of scorers,
+	 * scoring the tweets collected so far
+	 * 
+	 * @return aggregators of per-state sentiments
+	 */
+	public List<StateSentimentAggregator> getAggregators() {
+		flush();
+		return Collections.unmodifiableList(aggregators);
+	}
+}
@@ -0,0 +1,100 @@
+package data;
+
+import states.State;
+
+/**
+ * The class {@code PlaceResolver} determines the state of a Twitter place by
+ * its full name. Twitter names places of different levels differently:
+ * <ul>
+ * <li>cities as "Austin, TX"</li>
+ * <li>states as "Texas, USA"</li>
+ * <li>neighborhoods as "Mission District, San Francisco"</li>
+ * <li>places outside of the US as "Toronto, Ontario"</li>
+ * </ul>
+ * A state abbreviation after the last comma decides at once. Otherwise the
+ * country is dropped and the rest is resolved by {@link LocationResolver},
+ * which knows state names and major cities. Results are cached by full name,
+ * since the same places occur in many tweets.
+ * 
+ */
+public class PlaceResolver {
+
+	/** Number of cached places */
+	private static final int CACHE_CAPACITY = 1 << 14;
+
+	/** Resolver of names without abbreviations */
+	private final LocationResolver locations;
+
+	/** Cache of resolved places */
+	private final BoundedCache<String, State> cache = new BoundedCache<String, State>(CACHE_CAPACITY);
+
+	/**
+	 * Creates resolver, which resolves names by the given location resolver
+	 * 
+	 * @param locations
+	 *            resolver of state and city names
+	 */
+	public PlaceResolver(LocationResolver locations) {
+		this.locations = locations;
+	}
+
+	/**
+	 * Holder of the default resolver, which is created on the first use
+	 */
+	private static class DefaultResolver {
+		private static final PlaceResolver instance = new PlaceResolver(LocationResolver.getDefault());
+	}
+
+	/**
+	 * Returns resolver, which uses the default {@link LocationResolver}
+	 * 
+	 * @return default resolver
+	 */
+	public static PlaceResolver getDefault() {
+		return DefaultResolver.instance;
+	}
+
+	/**
+	 * Returns the state of the place
+	 * 
+	 * @param fullName
+	 *            full name of the place
+	 * @return state of the place or {@code State.Undefined}
+	 */
+	public State resolve(String fullName) {
+		if (fullName == null)
+			return State.Undefined;
+		State state = cache.get(fullName);
+		if (state == null) {
+			state = resolveUncached(fullName);
+			cache.put(fullName, state);
+		}
+		return state;
+	}
+
+	/**
+	 * Does the same as {@link #resolve(String)} without the cache
+	 * 
+	 * @param fullName
+	 *            full name of the place
+	 * @return state of the place or {@code State.Undefined}
+	 */
+	State resolveUncached(String fullName) {
+		String name = fullName.trim();
+		int comma = name.lastIndexOf(',');
+		if (comma >= 0) {
+			String suffix = name.substring(comma + 1).trim();
+			State state = State.abbreviationToState(suffix);
+			if (state != null)
+				return state;
+			if (isUnitedStates(suffix))
+				name = name.substring(0, comma);
+		}
+		return locations.resolveUncached(name);
+	}
+
+	private static boolean isUnitedStates(String country) {
+		return country.equalsIgnoreCase("USA") || country.equalsIgnoreCase("US")
+				|| country.equalsIgnoreCase("United States");
+	}
+}
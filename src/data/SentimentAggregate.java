@@ -0,0 +1,209 @@
+package data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The class {@code SentimentAggregate} keeps running totals of the sentiments
+ * of tweets associated with one state, so that the average sentiment can be
+ * computed without keeping the tweets themselves. Besides count and sum it
+ * keeps sum of squares, minimum, maximum and a histogram of sentiments.
+ * Aggregates of different runs can be merged and written to binary files.
+ * 
+ */
+public class SentimentAggregate {
+
+	/**
+	 * Largest absolute sentiment with its own histogram bucket, more extreme
+	 * sentiments are counted in the outermost buckets
+	 */
+	public static final int HISTOGRAM_LIMIT = 20;
+
+	/** Number of aggregated tweets */
+	private long count;
+
+	/** Sum of sentiments of aggregated tweets */
+	private long sum;
+
+	/** Sum of squared sentiments of aggregated tweets */
+	private long sumSquares;
+
+	/** Smallest and largest sentiments of aggregated tweets */
+	private int min = Integer.MAX_VALUE, max = Integer.MIN_VALUE;
+
+	/** Numbers of tweets by sentiment from -HISTOGRAM_LIMIT to HISTOGRAM_LIMIT */
+	private long[] histogram = new long[2 * HISTOGRAM_LIMIT + 1];
+
+	/**
+	 * Adds sentiment of one more tweet to the aggregate
+	 * 
+	 * @param sentiment
+	 *            sentiment score of the tweet
+	 */
+	public void add(int sentiment) {
+		count++;
+		sum += sentiment;
+		sumSquares += (long) sentiment * sentiment;
+		if (sentiment < min)
+			min = sentiment;
+		if (sentiment > max)
+			max = sentiment;
+		histogram[getBucket(sentiment)]++;
+	}
+
+	/**
+	 * Adds all the tweets aggregated by another aggregate to this one
+	 * 
+	 * @param other
+	 *            aggregate to be merged into this one
+	 */
+	public void merge(SentimentAggregate other) {
+		count += other.count;
+		sum += other.sum;
+		sumSquares += other.sumSquares;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		for (int i = 0; i < histogram.length; i++) {
+			histogram[i] += other.histogram[i];
+		}
+	}
+
+	/**
+	 * Returns independent copy of the aggregate
+	 * 
+	 * @return copy of the aggregate
+	 */
+	public SentimentAggregate copy() {
+		SentimentAggregate copy = new SentimentAggregate();
+		copy.merge(this);
+		return copy;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getSum() {
+		return sum;
+	}
+
+	public long getSumSquares() {
+		return sumSquares;
+	}
+
+	/**
+	 * Returns the smallest sentiment or {@code Integer.MAX_VALUE} if nothing
+	 * was aggregated
+	 * 
+	 * @return minimum sentiment
+	 */
+	public int getMin() {
+		return min;
+	}
+
+	/**
+	 * Returns the largest sentiment or {@code Integer.MIN_VALUE} if nothing
+	 * was aggregated
+	 * 
+	 * @return maximum sentiment
+	 */
+	public int getMax() {
+		return max;
+	}
+
+	/**
+	 * Returns average sentiment of aggregated tweets
+	 * 
+	 * @return mean sentiment
+	 */
+	public double getMean() {
+		return (double) sum / count;
+	}
+
+	/**
+	 * Returns population variance of sentiments of aggregated tweets
+	 * 
+	 * @return variance of sentiment
+	 */
+	public double getVariance() {
+		double mean = getMean();
+		return Math.max(0, (double) sumSquares / count - mean * mean);
+	}
+
+	/**
+	 * Returns number of tweets with the given sentiment. Sentiments beyond
+	 * {@link #HISTOGRAM_LIMIT} are counted together with the limit.
+	 * 
+	 * @param sentiment
+	 *            sentiment score
+	 * @return number of tweets in the histogram bucket of the sentiment
+	 */
+	public long getHistogramCount(int sentiment) {
+		return histogram[getBucket(sentiment)];
+	}
+
+	private static int getBucket(int sentiment) {
+		return Math.max(-HISTOGRAM_LIMIT, Math.min(HISTOGRAM_LIMIT, sentiment)) + HISTOGRAM_LIMIT;
+	}
+
+	/**
+	 * Writes the aggregate in binary form. Only non-empty histogram buckets
+	 * are written.
+	 * 
+	 * @param out
+	 *            output
+	 * @throws IOException
+	 *             if the aggregate can't be written
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeLong(count);
+		out.writeLong(sum);
+		out.writeLong(sumSquares);
+		out.writeInt(min);
+		out.writeInt(max);
+		int buckets = 0;
+		for (long n : histogram) {
+			if (n != 0)
+				buckets++;
+		}
+		out.writeByte(buckets);
+		for (int i = 0; i < histogram.length; i++) {
+			if (histogram[i] != 0) {
+				out.writeByte(i - HISTOGRAM_LIMIT);
+				out.writeLong(histogram[i]);
+			}
+		}
+	}
+
+	/**
+	 * Reads aggregate written by {@link #write(DataOutput)}
+	 * 
+	 * @param in
+	 *            input
+	 * @return aggregate
+	 * @throws IOException
+	 *             if the aggregate can't be read or is corrupt
+	 */
+	public static SentimentAggregate read(DataInput in) throws IOException {
+		SentimentAggregate aggregate = new SentimentAggregate();
+		aggregate.count = in.readLong();
+		aggregate.sum = in.readLong();
+		aggregate.sumSquares = in.readLong();
+		aggregate.min = in.readInt();
+		aggregate.max = in.readInt();
+		int buckets = in.readUnsignedByte();
+		for (int i = 0; i < buckets; i++) {
+			int sentiment = in.readByte();
+			if (sentiment < -HISTOGRAM_LIMIT || sentiment > HISTOGRAM_LIMIT)
+				throw new IOException("Invalid histogram bucket: " + sentiment);
+			aggregate.histogram[getBucket(sentiment)] = in.readLong();
+		}
+		return aggregate;
+	}
+
+	@Override
+	public String toString() {
+		return "count = " + count + " sum = " + sum + " min = " + min + " max = " + max;
+	}
+}
@@ -0,0 +1,109 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import states.State;
+
+/**
+ * The class {@code SentimentSnapshot} is an immutable copy of per-state
+ * sentiment totals with the ranking of states. Snapshots are published by
+ * the thread which collects the totals, so that other threads can read
+ * consistent totals without locking and without slowing the collection
+ * down.
+ * 
+ */
+public class SentimentSnapshot {
+
+	/** Snapshot without tweets */
+	public static final SentimentSnapshot EMPTY = new SentimentSnapshot(new StateSentimentAggregator(), 0);
+
+	/** Mapping from state to the copy of its aggregate */
+	private final Map<State, SentimentAggregate> stateToSentiment;
+
+	/** Defined states from the happiest to the least happy */
+	private final List<State> ranking;
+
+	/** Time the snapshot was taken in milliseconds since the epoch */
+	private final long timeMillis;
+
+	/**
+	 * Copies totals of the aggregator
+	 * 
+	 * @param aggregator
+	 *            aggregator which totals are copied
+	 * @param timeMillis
+	 *            time the snapshot is taken
+	 */
+	public SentimentSnapshot(StateSentimentAggregator aggregator, long timeMillis) {
+		final Map<State, SentimentAggregate> copy = new EnumMap<State, SentimentAggregate>(State.class);
+		List<State> ranking = new ArrayList<State>();
+		for (Entry<State, SentimentAggregate> entry : aggregator.getStateToSentimentMap().entrySet()) {
+			copy.put(entry.getKey(), entry.getValue().copy());
+			if (entry.getKey() != State.Undefined && entry.getValue().getCount() > 0)
+				ranking.add(entry.getKey());
+		}
+		Collections.sort(ranking, new Comparator<State>() {
+			@Override
+			public int compare(State a, State b) {
+				int result = Double.compare(copy.get(b).getMean(), copy.get(a).getMean());
+				return result != 0 ? result : a.compareTo(b);
+			}
+		});
+		this.stateToSentiment = Collections.unmodifiableMap(copy);
+		this.ranking = Collections.unmodifiableList(ranking);
+		this.timeMillis = timeMillis;
+	}
+
+	/**
+	 * Returns aggregate of the state, which must not be modified
+	 * 
+	 * @param state
+	 *            state
+	 * @return aggregate or {@code null} if the state has no tweets
+	 */
+	public SentimentAggregate getAggregate(State state) {
+		return stateToSentiment.get(state);
+	}
+
+	/**
+	 * Returns defined states, which have tweets, from the happiest to the
+	 * least happy
+	 * 
+	 * @return ranking of states
+	 */
+	public List<State> getRanking() {
+		return ranking;
+	}
+
+	/**
+	 * Returns the happiest state
+	 * 
+	 * @return the happiest state or {@code null} if there are no tweets
+	 */
+	public State getHappiest() {
+		return ranking.isEmpty() ? null : ranking.get(0);
+	}
+
+	public long getTimeMillis() {
+		return timeMillis;
+	}
+
+	/**
+	 * Returns number of meaningful tweets of all states
+	 * 
+	 * @return number of tweets
+	 */
+	public long getTweetsCount() {
+		long count = 0;
+		for (SentimentAggregate aggregate : stateToSentiment.values()) {
+			count += aggregate.getCount();
+		}
+		return count;
+	}
+}
@@ -0,0 +1,204 @@
+package data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import metrics.PipelineMetrics;
+import states.State;
+import tweets.RawTweet;
+import tweets.RawTweetHandler;
+
+/**
+ * The {@code StateSentimentAggregator} class is a streaming counterpart of
+ * {@link StateToTweetsBuilder}. It determines the state and sentiment of each
+ * tweet as soon as it is parsed and keeps only running per-state totals, so
+ * memory usage doesn't depend on the size of the twitter stream.
+ * <p>
+ * Totals can be saved to a snapshot file, so that results of partial runs on
+ * different machines or days are combined by merging their snapshots instead
+ * of reprocessing the tweets.
+ * 
+ */
+public class StateSentimentAggregator implements RawTweetHandler {
+	/** Magic number of snapshot files */
+	private static final int MAGIC = 0x53534E50;
+
+	/** Version of snapshot format */
+	private static final int VERSION = 1;
+
+	/** Mapping from US state to the aggregated sentiment of its tweets */
+	private Map<State, SentimentAggregate> stateToSentiment;
+
+	public StateSentimentAggregator() {
+		stateToSentiment = new EnumMap<State, SentimentAggregate>(State.class);
+	}
+
+	@Override
+	public void handle(RawTweet tweet) {
+		PipelineMetrics metrics = PipelineMetrics.get();
+		long time = metrics.startTimer();
+		State state = StateToTweetsBuilder.determineState(tweet);
+		time = metrics.stopTimer(PipelineMetrics.Stage.LOCATE, time);
+		Tweet instance = new Tweet(state, tweet);
+		metrics.stopTimer(PipelineMetrics.Stage.SCORE, time);
+		if (instance.isMeaningful()) {
+			getAggregate(state).add((int) instance.getSentiment());
+			metrics.recordOutcome(state);
+		} else {
+			metrics.recordDrop(PipelineMetrics.Drop.NOT_MEANINGFUL);
+		}
+	}
+
+	/**
+	 * Adds sentiment of a meaningful tweet, which was scored elsewhere, for
+	 * example rescored from a {@link ColumnStore}
+	 * 
+	 * @param state
+	 *            state of the tweet
+	 * @param sentiment
+	 *            sentiment of the tweet
+	 */
+	public void add(State state, int sentiment) {
+		getAggregate(state).add(sentiment);
+	}
+
+	/**
+	 * Adds per-state totals collected by another aggregator to this one
+	 * 
+	 * @param other
+	 *            aggregator to be merged into this one
+	 */
+	public void merge(StateSentimentAggregator other) {
+		for (Entry<State, SentimentAggregate> entry : other.stateToSentiment.entrySet()) {
+			getAggregate(entry.getKey()).merge(entry.getValue());
+		}
+	}
+
+	/**
+	 * Returns mapping from state to the aggregated sentiment of tweets, which
+	 * probably were originated from it
+	 * 
+	 * @return map from state to its sentiment aggregate
+	 */
+	public Map<State, SentimentAggregate> getStateToSentimentMap() {
+		return stateToSentiment;
+	}
+
+	/**
+	 * Writes per-state totals to a snapshot file. The file is replaced only
+	 * when it is completely written.
+	 * 
+	 * @param file
+	 *            snapshot file
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public void save(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			write(out);
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Reads per-state totals from a snapshot file
+	 * 
+	 * @param file
+	 *            snapshot file written by {@link #save(File)}
+	 * @return aggregator with the totals of the snapshot
+	 * @throws IOException
+	 *             if the file can't be read or isn't a snapshot
+	 */
+	public static StateSentimentAggregator load(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file + " isn't a sentiment snapshot");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported version of " + file + ": " + version);
+			return read(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes per-state totals in binary form without snapshot header
+	 * 
+	 * @param out
+	 *            output
+	 * @throws IOException
+	 *             if the totals can't be written
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(stateToSentiment.size());
+		for (Entry<State, SentimentAggregate> entry : stateToSentiment.entrySet()) {
+			// states are identified by name, so that snapshots don't depend on
+			// the order of constants
+			out.writeUTF(entry.getKey().name());
+			entry.getValue().write(out);
+		}
+	}
+
+	/**
+	 * Reads per-state totals written by {@link #write(DataOutput)}
+	 * 
+	 * @param in
+	 *            input
+	 * @return aggregator with the read totals
+	 * @throws IOException
+	 *             if the totals can't be read or are corrupt
+	 */
+	public static StateSentimentAggregator read(DataInput in) throws IOException {
+		StateSentimentAggregator aggregator = new StateSentimentAggregator();
+		int statesCount = in.readInt();
+		for (int i = 0; i < statesCount; i++) {
+			String name = in.readUTF();
+			State state;
+			try {
+				state = State.valueOf(name);
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Unknown state: " + name);
+			}
+			aggregator.getAggregate(state).merge(SentimentAggregate.read(in));
+		}
+		return aggregator;
+	}
+
+	/**
+	 * Returns aggregate of the given state creating it if necessary
+	 * 
+	 * @param state
+	 *            state which aggregate is returned
+	 * @return sentiment aggregate of the state
+	 */
+	private SentimentAggregate getAggregate(State state) {
+		SentimentAggregate aggregate = stateToSentiment.get(state);
+		if (aggregate == null) {
+			aggregate = new SentimentAggregate();
+			stateToSentiment.put(state, aggregate);
+		}
+		return aggregate;
+	}
+}
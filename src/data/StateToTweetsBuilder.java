@@ -5,6 +5,7 @@ import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 
+import metrics.PipelineMetrics;
 import states.State;
 import tweets.RawTweet;
 
@@ -29,10 +30,17 @@ public class StateToTweetsBuilder {
 	public StateToTweetsBuilder(List<RawTweet> rawTweetsList) {
 		stateToTweets = new EnumMap<State, List<Tweet>>(State.class);
 
+		PipelineMetrics metrics = PipelineMetrics.get();
 		for (RawTweet tweet : rawTweetsList) {
+			long time = metrics.startTimer();
 			State state = determineState(tweet);
+			time = metrics.stopTimer(PipelineMetrics.Stage.LOCATE, time);
 			Tweet instance = new Tweet(state, tweet);
-			if (instance.isMeaningful()) {
+			metrics.stopTimer(PipelineMetrics.Stage.SCORE, time);
+			if (!instance.isMeaningful()) {
+				metrics.recordDrop(PipelineMetrics.Drop.NOT_MEANINGFUL);
+			} else {
+				metrics.recordOutcome(state);
 				if (!stateToTweets.containsKey(state)) {
 					ArrayList<Tweet> tweetsList = new ArrayList<Tweet>();
 					tweetsList.add(instance);
@@ -68,21 +76,15 @@ public class StateToTweetsBuilder {
 	 *            raw tweet from which its origin is determined
 	 * @return state associated with the given tweet
 	 */
-	private State determineState(RawTweet tweet) {
+	public static State determineState(RawTweet tweet) {
 		if (tweet.getCoordinates() != null) {
 			double lng = tweet.getCoordinates().getCoordinates()[0]; // y
 			double lat = tweet.getCoordinates().getCoordinates()[1]; // x
 			return State.getStateOfGeoLocation(lat, lng);
 		}
 
-		if (tweet.getPlace() != null) {
-			String text = tweet.getPlace().getFullName();
-			State state = State.abbreviationToState(text.substring(text.length() - 2));
-			if (state == null)
-				return State.Undefined;
-			else
-				return state;
-		}
+		if (tweet.getPlace() != null)
+			return PlaceResolver.getDefault().resolve(tweet.getPlace().getFullName());
 
 		if (tweet.getUser().getLocation() != null) {
 			String location = tweet.getUser().getLocation();
@@ -93,17 +95,16 @@ public class StateToTweetsBuilder {
 	}
 
 	/**
-	 * Searches the state name and abbreviation in the given string
+	 * Searches the state name, abbreviation or a major city in the given
+	 * string
+	 * 
+	 * @see LocationResolver
 	 * 
 	 * @param s
 	 *            the string to be examined
 	 * @return state which is mentioned in the given string
 	 */
-	private State getProbableState(String s) {
-		for (State state : State.values()) {
-			if (s.contains(state.name()) || s.contains(state.getAbbreviation().toUpperCase()))
-				return state;
-		}
-		return State.Undefined;
+	private static State getProbableState(String s) {
+		return LocationResolver.getDefault().resolve(s);
 	}
-}
\ No newline at end of file
+}
@@ -1,10 +1,11 @@
 package data;
 
-import java.util.Map;
-import java.util.StringTokenizer;
-
+import metrics.PipelineMetrics;
 import states.State;
 import tweets.RawTweet;
+import tweets.TextCache;
+import words.Lexicon;
+import words.SentimentScorer;
 import words.WordsToSentimentBuilder;
 
 /**
@@ -15,6 +16,15 @@ import words.WordsToSentimentBuilder;
  */
 public class Tweet {
 
+	/** Scorer used by the current thread */
+	private static final ThreadLocal<SentimentScorer> scorers = new ThreadLocal<SentimentScorer>();
+
+	/** Indicates whether the longest phrases of any length are matched */
+	private static volatile boolean phraseMatching;
+
+	/** Cache of sentiment and arousal of texts or {@code null} */
+	private static volatile TextCache sentimentCache;
+
 	/** State that tweet originates from */
 	private State state;
 
@@ -65,6 +75,30 @@ public class Tweet {
 		return isMeaningful;
 	}
 
+	/**
+	 * Chooses how tweets are scored. By default tokens are scored in pairs:
+	 * both tokens of a pair and the two-word phrase they form. With phrase
+	 * matching the longest word or phrase of any length is matched from left
+	 * to right and its words aren't scored again.
+	 * 
+	 * @param phraseMatching
+	 *            true to match phrases of any length
+	 */
+	public static void setPhraseMatching(boolean phraseMatching) {
+		Tweet.phraseMatching = phraseMatching;
+	}
+
+	/**
+	 * Sets cache, which keeps sentiment and arousal of recently scored texts,
+	 * so that repeated texts are scored once
+	 * 
+	 * @param sentimentCache
+	 *            cache or {@code null} to score every text
+	 */
+	public static void setSentimentCache(TextCache sentimentCache) {
+		Tweet.sentimentCache = sentimentCache;
+	}
+
 	@Override
 	public String toString() {
 		return new String("state = " + state.name() + " " + sentiment + "   " + tweet.toString());
@@ -74,48 +108,37 @@ public class Tweet {
 	 * Calculates sentiment of the given string as a sum of sentiment scores of
 	 * tokens in the string.
 	 * 
+	 * @see SentimentScorer#score(String)
+	 * 
 	 * @param s
 	 *            string for which sentiment score is computed
 	 * @return sentiment scores
 	 */
 	private int calculateSentiment(String s) {
-		Map<String, Integer> wordsToSentiment = WordsToSentimentBuilder.getWordsSentimentMap();
-		String text = s.replaceAll("\\p{Punct}|\\d", "").toLowerCase();
-		int sentiment = 0;
-		int arousal = 0;
-		int currentSentiment = 0;
-		StringTokenizer tokenizer = new StringTokenizer(text);
-
-		while (tokenizer.hasMoreTokens()) {
-			String firstToken = tokenizer.nextToken();
-
-			if (wordsToSentiment.containsKey(firstToken)) {
-				currentSentiment = wordsToSentiment.get(firstToken).intValue();
-				sentiment += currentSentiment;
-				arousal += Math.abs(currentSentiment);
+		Lexicon lexicon = WordsToSentimentBuilder.getLexicon();
+		SentimentScorer scorer = scorers.get();
+		boolean phraseMatching = Tweet.phraseMatching;
+		TextCache cache = sentimentCache;
+		long key = 0;
+		if (cache != null) {
+			// scores differ between lexicons and ways of matching
+			key = TextCache.hash(s, System.identityHashCode(lexicon) * 2 + (phraseMatching ? 1 : 0));
+			long cached = cache.get(key, Long.MIN_VALUE);
+			PipelineMetrics.get().recordLookup(PipelineMetrics.Cache.SENTIMENT, cached != Long.MIN_VALUE);
+			if (cached != Long.MIN_VALUE) {
+				isMeaningful = (int) cached != 0;
+				return (int) (cached >> 32);
 			}
-
-			if (tokenizer.hasMoreTokens()) {
-				String secondToken = tokenizer.nextToken();
-				String phrase = firstToken.concat(" " + secondToken);
-
-				if (wordsToSentiment.containsKey(phrase)) {
-					currentSentiment = wordsToSentiment.get(phrase).intValue();
-					sentiment += currentSentiment;
-					arousal += Math.abs(currentSentiment);
-				}
-				if (wordsToSentiment.containsKey(secondToken)) {
-					currentSentiment = wordsToSentiment.get(secondToken).intValue();
-					sentiment += currentSentiment;
-					arousal += Math.abs(currentSentiment);
-				}
-			}
-			if (arousal == 0)
-				isMeaningful = false;
-			else
-				isMeaningful = true;
 		}
-
+		if (scorer == null || scorer.getLexicon() != lexicon || scorer.isPhraseMatching() != phraseMatching) {
+			scorer = phraseMatching ? new SentimentScorer(WordsToSentimentBuilder.getLexiconTrie())
+					: new SentimentScorer(lexicon);
+			scorers.set(scorer);
+		}
+		int sentiment = scorer.score(s);
+		isMeaningful = scorer.getArousal() != 0;
+		if (cache != null)
+			cache.put(key, (long) sentiment << 32 | scorer.getArousal() & 0xFFFFFFFFL);
 		return sentiment;
 	}
 }
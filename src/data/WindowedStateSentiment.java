@@ -0,0 +1,286 @@
+package data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+import states.State;
+import tweets.RawTweet;
+import tweets.RawTweetHandler;
+
+/**
+ * The {@code WindowedStateSentiment} class keeps per-state sentiment of the
+ * tweets received during the last minutes, for several sliding windows at
+ * once, e.g. 5 minutes, an hour and a day. Tweets are counted in per-minute
+ * buckets of a ring, which is as long as the longest window, so memory usage
+ * doesn't depend on the number of tweets. Each window keeps running totals,
+ * which are updated when a tweet is added or a minute leaves the window, and
+ * a ranking of states, in which only the states whose totals changed are
+ * moved.
+ * <p>
+ * Time is the time tweets were posted, taken from their {@code timestamp_ms}
+ * field, so a stream replayed from a file gives the same windows as it did
+ * live. Tweets without a timestamp are taken as posted at the current minute,
+ * which is the minute of the latest timestamp, and only before the first
+ * timestamp the clock is used. A tweet arriving late is added to the minute it
+ * was posted, unless that minute has left all windows.
+ * 
+ */
+public class WindowedStateSentiment implements RawTweetHandler {
+	/** Defined states, which are ranked */
+	private static final State[] states = State.values();
+
+	/** Lengths of windows in minutes */
+	private final int[] windows;
+
+	/** Number of per-minute buckets, which is the length of the longest window */
+	private final int ringSize;
+
+	/** Number and sum of sentiments per state and bucket */
+	private final long[][] bucketCounts, bucketSums;
+
+	/** Number and sum of sentiments per window and state */
+	private final long[][] windowCounts, windowSums;
+
+	/** States ordered from the happiest to the least happy per window */
+	private final List<TreeSet<State>> rankings;
+
+	/** Current minute since the epoch, or -1 before the first advance */
+	private long currentMinute = -1;
+
+	/**
+	 * Creates windows of the given lengths
+	 * 
+	 * @param windowMinutes
+	 *            lengths of windows in minutes
+	 */
+	public WindowedStateSentiment(int... windowMinutes) {
+		if (windowMinutes.length == 0)
+			throw new IllegalArgumentException("No windows given");
+		windows = windowMinutes.clone();
+		int longest = 0;
+		for (int minutes : windows) {
+			if (minutes < 1)
+				throw new IllegalArgumentException("Window length must be positive: " + minutes);
+			longest = Math.max(longest, minutes);
+		}
+		ringSize = longest;
+		bucketCounts = new long[states.length][ringSize];
+		bucketSums = new long[states.length][ringSize];
+		windowCounts = new long[windows.length][states.length];
+		windowSums = new long[windows.length][states.length];
+		rankings = new ArrayList<TreeSet<State>>(windows.length);
+		for (int w = 0; w < windows.length; w++) {
+			rankings.add(new TreeSet<State>(new ByMeanDescending(w)));
+		}
+	}
+
+	/**
+	 * Orders states of one window by their mean sentiment
+	 */
+	private class ByMeanDescending implements Comparator<State> {
+		private final int window;
+
+		ByMeanDescending(int window) {
+			this.window = window;
+		}
+
+		@Override
+		public int compare(State a, State b) {
+			int result = Double.compare(getMean(window, b), getMean(window, a));
+			return result != 0 ? result : a.compareTo(b);
+		}
+	}
+
+	/**
+	 * Moves current time forward expiring the minutes which left the windows.
+	 * Time moving backwards is ignored.
+	 * 
+	 * @param timeMillis
+	 *            current time in milliseconds since the epoch
+	 */
+	public void advance(long timeMillis) {
+		long minute = timeMillis / 60000;
+		if (currentMinute < 0) {
+			currentMinute = minute;
+			return;
+		}
+		if (minute <= currentMinute)
+			return;
+		if (minute - currentMinute >= ringSize) {
+			// all buckets are expired
+			for (int s = 0; s < states.length; s++) {
+				Arrays.fill(bucketCounts[s], 0);
+				Arrays.fill(bucketSums[s], 0);
+			}
+			for (int w = 0; w < windows.length; w++) {
+				Arrays.fill(windowCounts[w], 0);
+				Arrays.fill(windowSums[w], 0);
+				rankings.get(w).clear();
+			}
+			currentMinute = minute;
+			return;
+		}
+		while (currentMinute < minute) {
+			currentMinute++;
+			for (int w = 0; w < windows.length; w++) {
+				int expired = getSlot(currentMinute - windows[w]);
+				for (int s = 0; s < states.length; s++) {
+					if (bucketCounts[s][expired] != 0)
+						update(w, s, -bucketCounts[s][expired], -bucketSums[s][expired]);
+				}
+			}
+			int slot = getSlot(currentMinute);
+			for (int s = 0; s < states.length; s++) {
+				bucketCounts[s][slot] = 0;
+				bucketSums[s][slot] = 0;
+			}
+		}
+	}
+
+	private int getSlot(long minute) {
+		int slot = (int) (minute % ringSize);
+		return slot < 0 ? slot + ringSize : slot;
+	}
+
+	@Override
+	public void handle(RawTweet tweet) {
+		State state = StateToTweetsBuilder.determineState(tweet);
+		Tweet instance = new Tweet(state, tweet);
+		if (instance.isMeaningful()) {
+			long time = tweet.getTimestampMillis();
+			if (time != 0)
+				add(state, (int) instance.getSentiment(), time);
+			else
+				add(state, (int) instance.getSentiment());
+		}
+	}
+
+	/**
+	 * Adds sentiment of a tweet received at the current minute, which is
+	 * taken from the clock if no tweet has been added yet
+	 * 
+	 * @param state
+	 *            state of the tweet
+	 * @param sentiment
+	 *            sentiment of the tweet
+	 */
+	public void add(State state, int sentiment) {
+		if (currentMinute < 0)
+			advance(System.currentTimeMillis());
+		add(state, sentiment, currentMinute * 60000);
+	}
+
+	/**
+	 * Adds sentiment of a tweet posted at the given time, moving current time
+	 * forward to it. A tweet older than the longest window is ignored.
+	 * 
+	 * @param state
+	 *            state of the tweet
+	 * @param sentiment
+	 *            sentiment of the tweet
+	 * @param timeMillis
+	 *            time the tweet was posted in milliseconds since the epoch
+	 */
+	public void add(State state, int sentiment, long timeMillis) {
+		advance(timeMillis);
+		long age = currentMinute - timeMillis / 60000;
+		if (age >= ringSize)
+			return;
+		int s = state.ordinal();
+		int slot = getSlot(currentMinute - age);
+		bucketCounts[s][slot]++;
+		bucketSums[s][slot] += sentiment;
+		for (int w = 0; w < windows.length; w++) {
+			if (age < windows[w])
+				update(w, s, 1, sentiment);
+		}
+	}
+
+	/**
+	 * Changes totals of the state in the window keeping its ranking ordered
+	 */
+	private void update(int window, int s, long count, long sum) {
+		State state = states[s];
+		boolean ranked = state != State.Undefined;
+		TreeSet<State> ranking = rankings.get(window);
+		if (ranked)
+			ranking.remove(state);
+		windowCounts[window][s] += count;
+		windowSums[window][s] += sum;
+		if (ranked && windowCounts[window][s] > 0)
+			ranking.add(state);
+	}
+
+	/**
+	 * Returns number of windows
+	 * 
+	 * @return number of windows
+	 */
+	public int getWindowsCount() {
+		return windows.length;
+	}
+
+	/**
+	 * Returns length of the window
+	 * 
+	 * @param window
+	 *            index of the window
+	 * @return length in minutes
+	 */
+	public int getWindowMinutes(int window) {
+		return windows[window];
+	}
+
+	/**
+	 * Returns number of tweets of the state in the window
+	 * 
+	 * @param window
+	 *            index of the window
+	 * @param state
+	 *            state
+	 * @return number of tweets
+	 */
+	public long getCount(int window, State state) {
+		return windowCounts[window][state.ordinal()];
+	}
+
+	/**
+	 * Returns mean sentiment of the state in the window
+	 * 
+	 * @param window
+	 *            index of the window
+	 * @param state
+	 *            state
+	 * @return mean sentiment or NaN if the state has no tweets in the window
+	 */
+	public double getMean(int window, State state) {
+		return (double) windowSums[window][state.ordinal()] / windowCounts[window][state.ordinal()];
+	}
+
+	/**
+	 * Returns defined states, which have tweets in the window, from the
+	 * happiest to the least happy
+	 * 
+	 * @param window
+	 *            index of the window
+	 * @return ranking of states
+	 */
+	public List<State> getRanking(int window) {
+		return new ArrayList<State>(rankings.get(window));
+	}
+
+	/**
+	 * Returns the happiest state in the window
+	 * 
+	 * @param window
+	 *            index of the window
+	 * @return the happiest state or {@code null} if the window is empty
+	 */
+	public State getHappiest(int window) {
+		TreeSet<State> ranking = rankings.get(window);
+		return ranking.isEmpty() ? null : ranking.first();
+	}
+}
@@ -0,0 +1,500 @@
+package metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import states.State;
+
+/**
+ * The class {@code PipelineMetrics} counts lines and bytes read, tweets
+ * dropped for each reason and accepted, and keeps latency histograms of the
+ * pipeline stages.
+ * <p>
+ * Every thread records into its own plain counters, which are summed only
+ * when metrics are read, so recording costs a thread-local lookup and an
+ * increment. Only one of {@value #SAMPLING_PERIOD} timers, chosen at random, is
+ * actually timed, which keeps calls to {@code System.nanoTime()} off most
+ * tweets.
+ * Latency histograms have a bucket per power of two nanoseconds. Since
+ * counters aren't synchronized, values read while a run is going on may lag
+ * slightly behind.
+ * 
+ */
+public class PipelineMetrics implements PipelineMetricsMBean {
+
+	/** Stages of the pipeline */
+	public enum Stage {
+		PARSE, DEDUP, LANGUAGE, LOCATE, SCORE
+	}
+
+	/** Reasons for which tweets are dropped */
+	public enum Drop {
+		DELETED, DUPLICATE, NOT_ENGLISH, UNDEFINED_STATE, NOT_MEANINGFUL
+	}
+
+	/** Caches of values computed from texts */
+	public enum Cache {
+		SENTIMENT, LANGUAGE
+	}
+
+	/** Name of the MBean */
+	public static final String OBJECT_NAME = "happiness:type=PipelineMetrics";
+
+	/** One of this number of timers is timed, must be a power of two */
+	private static final int SAMPLING_PERIOD = 8;
+
+	/** Number of latency histogram buckets */
+	private static final int BUCKETS = 64;
+
+	/** Indices of counters of a recorder */
+	private static final int LINES = 0, BYTES = 1, ACCEPTED = 2, DROPS = 3;
+
+	/** Index of the first counter of cache hits and misses */
+	private static final int CACHES = DROPS + Drop.values().length;
+
+	/** The only instance */
+	private static final PipelineMetrics instance = new PipelineMetrics();
+
+	/** Recorders of all threads */
+	private final List<Recorder> recorders = new CopyOnWriteArrayList<Recorder>();
+
+	/** Recorder of the current thread */
+	private final ThreadLocal<Recorder> recorder = new ThreadLocal<Recorder>() {
+		@Override
+		protected Recorder initialValue() {
+			Recorder recorder = new Recorder();
+			recorders.add(recorder);
+			return recorder;
+		}
+	};
+
+	/** Time the run started in nanoseconds */
+	private volatile long startNanos = System.nanoTime();
+
+	/** Thread printing progress, if any */
+	private Thread progressLogger;
+
+	/**
+	 * Counters of one thread
+	 */
+	private static class Recorder {
+		/** Lines, bytes, accepted tweets, drops and cache hits and misses */
+		final long[] counters = new long[CACHES + 2 * Cache.values().length];
+
+		/** Latency histograms of stages */
+		final long[][] histograms = new long[Stage.values().length][BUCKETS];
+
+		/** Sums of latencies of stages */
+		final long[] totalNanos = new long[Stage.values().length];
+
+		/** State of the generator, which chooses sampled timers */
+		int random = (int) System.nanoTime() | 1;
+	}
+
+	private PipelineMetrics() {
+	}
+
+	/**
+	 * Returns metrics of this JVM
+	 * 
+	 * @return metrics
+	 */
+	public static PipelineMetrics get() {
+		return instance;
+	}
+
+	/**
+	 * Counts a line read from the stream
+	 * 
+	 * @param bytes
+	 *            length of the line in bytes
+	 */
+	public void recordLine(int bytes) {
+		long[] counters = recorder.get().counters;
+		counters[LINES]++;
+		counters[BYTES] += bytes;
+	}
+
+	/**
+	 * Counts a dropped tweet
+	 * 
+	 * @param reason
+	 *            reason the tweet was dropped for
+	 */
+	public void recordDrop(Drop reason) {
+		recorder.get().counters[DROPS + reason.ordinal()]++;
+	}
+
+	/**
+	 * Counts a meaningful tweet: it is accepted if its state is defined and
+	 * dropped otherwise
+	 * 
+	 * @param state
+	 *            state of the tweet
+	 */
+	public void recordOutcome(State state) {
+		long[] counters = recorder.get().counters;
+		if (state == State.Undefined)
+			counters[DROPS + Drop.UNDEFINED_STATE.ordinal()]++;
+		else
+			counters[ACCEPTED]++;
+	}
+
+	/**
+	 * Counts a lookup of a cache
+	 * 
+	 * @param cache
+	 *            cache looked up
+	 * @param hit
+	 *            true if the value was found
+	 */
+	public void recordLookup(Cache cache, boolean hit) {
+		recorder.get().counters[CACHES + 2 * cache.ordinal() + (hit ? 0 : 1)]++;
+	}
+
+	/**
+	 * Starts timing of a stage if this timer is sampled
+	 * 
+	 * @return start time to be passed to {@link #stopTimer(Stage, long)} or 0
+	 *         if the timer isn't sampled
+	 */
+	public long startTimer() {
+		Recorder r = recorder.get();
+		// timers are sampled at random, since sampling every n-th timer
+		// would always pick the same stage of a tweet
+		int x = r.random;
+		x ^= x << 13;
+		x ^= x >>> 17;
+		x ^= x << 5;
+		r.random = x;
+		return (x & (SAMPLING_PERIOD - 1)) == 0 ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records latency of a stage started by {@link #startTimer()}
+	 * 
+	 * @param stage
+	 *            timed stage
+	 * @param start
+	 *            value returned by {@link #startTimer()}
+	 * @return current time, which may be used as start time of the next stage,
+	 *         or 0 if the timer isn't sampled
+	 */
+	public long stopTimer(Stage stage, long start) {
+		if (start == 0)
+			return 0;
+		long now = System.nanoTime();
+		long nanos = now - start;
+		Recorder r = recorder.get();
+		r.histograms[stage.ordinal()][BUCKETS - 1 - Long.numberOfLeadingZeros(Math.max(1, nanos))]++;
+		r.totalNanos[stage.ordinal()] += nanos;
+		return now;
+	}
+
+	/**
+	 * Resets all counters and starts measuring throughput from now. Should be
+	 * called when no tweets are being processed.
+	 */
+	public void reset() {
+		for (Recorder r : recorders) {
+			Arrays.fill(r.counters, 0);
+			Arrays.fill(r.totalNanos, 0);
+			for (long[] histogram : r.histograms) {
+				Arrays.fill(histogram, 0);
+			}
+		}
+		startNanos = System.nanoTime();
+	}
+
+	private long sumCounter(int index) {
+		long sum = 0;
+		for (Recorder r : recorders) {
+			sum += r.counters[index];
+		}
+		return sum;
+	}
+
+	private long[] sumHistogram(Stage stage) {
+		long[] sum = new long[BUCKETS];
+		for (Recorder r : recorders) {
+			long[] histogram = r.histograms[stage.ordinal()];
+			for (int i = 0; i < BUCKETS; i++) {
+				sum[i] += histogram[i];
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Returns number of timed samples of the stage
+	 * 
+	 * @param stage
+	 *            stage
+	 * @return number of samples
+	 */
+	public long getSamples(Stage stage) {
+		long count = 0;
+		for (long n : sumHistogram(stage)) {
+			count += n;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns mean latency of the stage
+	 * 
+	 * @param stage
+	 *            stage
+	 * @return mean latency in microseconds or NaN if there are no samples
+	 */
+	public double getMeanMicros(Stage stage) {
+		long total = 0;
+		for (Recorder r : recorders) {
+			total += r.totalNanos[stage.ordinal()];
+		}
+		return total / 1000.0 / getSamples(stage);
+	}
+
+	/**
+	 * Returns upper bound of the latency percentile of the stage, which is
+	 * precise to a power of two
+	 * 
+	 * @param stage
+	 *            stage
+	 * @param fraction
+	 *            percentile as a fraction, e.g. 0.99
+	 * @return latency in microseconds or NaN if there are no samples
+	 */
+	public double getPercentileMicros(Stage stage, double fraction) {
+		long[] histogram = sumHistogram(stage);
+		long count = 0;
+		for (long n : histogram) {
+			count += n;
+		}
+		if (count == 0)
+			return Double.NaN;
+		long rank = (long) Math.ceil(fraction * count);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += histogram[i];
+			if (seen >= Math.max(1, rank))
+				return Math.pow(2, i + 1) / 1000;
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	private double getElapsedSeconds() {
+		return (System.nanoTime() - startNanos) / 1e9;
+	}
+
+	@Override
+	public long getLines() {
+		return sumCounter(LINES);
+	}
+
+	@Override
+	public long getBytes() {
+		return sumCounter(BYTES);
+	}
+
+	@Override
+	public double getLinesPerSecond() {
+		return getLines() / getElapsedSeconds();
+	}
+
+	@Override
+	public double getBytesPerSecond() {
+		return getBytes() / getElapsedSeconds();
+	}
+
+	/**
+	 * Returns number of tweets dropped for the reason
+	 * 
+	 * @param reason
+	 *            reason of the drop
+	 * @return number of dropped tweets
+	 */
+	public long getDrops(Drop reason) {
+		return sumCounter(DROPS + reason.ordinal());
+	}
+
+	@Override
+	public long getDeleted() {
+		return getDrops(Drop.DELETED);
+	}
+
+	@Override
+	public long getDuplicate() {
+		return getDrops(Drop.DUPLICATE);
+	}
+
+	@Override
+	public long getNotEnglish() {
+		return getDrops(Drop.NOT_ENGLISH);
+	}
+
+	@Override
+	public long getUndefinedState() {
+		return getDrops(Drop.UNDEFINED_STATE);
+	}
+
+	@Override
+	public long getNotMeaningful() {
+		return getDrops(Drop.NOT_MEANINGFUL);
+	}
+
+	/**
+	 * Returns number of lookups of the cache
+	 * 
+	 * @param cache
+	 *            cache
+	 * @return number of lookups
+	 */
+	public long getLookups(Cache cache) {
+		return sumCounter(CACHES + 2 * cache.ordinal()) + sumCounter(CACHES + 2 * cache.ordinal() + 1);
+	}
+
+	/**
+	 * Returns share of lookups of the cache, which found the value
+	 * 
+	 * @param cache
+	 *            cache
+	 * @return hit rate or NaN if the cache wasn't looked up
+	 */
+	public double getHitRate(Cache cache) {
+		return (double) sumCounter(CACHES + 2 * cache.ordinal()) / getLookups(cache);
+	}
+
+	@Override
+	public double getSentimentCacheHitRate() {
+		return getHitRate(Cache.SENTIMENT);
+	}
+
+	@Override
+	public double getLanguageCacheHitRate() {
+		return getHitRate(Cache.LANGUAGE);
+	}
+
+	@Override
+	public long getAccepted() {
+		return sumCounter(ACCEPTED);
+	}
+
+	@Override
+	public double getParseMeanMicros() {
+		return getMeanMicros(Stage.PARSE);
+	}
+
+	@Override
+	public double getDedupMeanMicros() {
+		return getMeanMicros(Stage.DEDUP);
+	}
+
+	@Override
+	public double getLanguageMeanMicros() {
+		return getMeanMicros(Stage.LANGUAGE);
+	}
+
+	@Override
+	public double getLocateMeanMicros() {
+		return getMeanMicros(Stage.LOCATE);
+	}
+
+	@Override
+	public double getScoreMeanMicros() {
+		return getMeanMicros(Stage.SCORE);
+	}
+
+	/**
+	 * Returns one line with the progress of the run
+	 * 
+	 * @return progress
+	 */
+	public String getProgress() {
+		double seconds = getElapsedSeconds();
+		return String.format("%.0f s: %d lines, %.1f MB, %.0f lines/s, %.1f MB/s, %d accepted", seconds,
+				getLines(), getBytes() / 1048576.0, getLines() / seconds, getBytes() / 1048576.0 / seconds,
+				getAccepted());
+	}
+
+	@Override
+	public String getSummary() {
+		StringBuilder summary = new StringBuilder();
+		summary.append(getProgress()).append('\n');
+		summary.append(String.format(
+				"dropped: %d deleted, %d duplicate, %d not English, %d undefined state, %d not meaningful%n",
+				getDeleted(), getDuplicate(), getNotEnglish(), getUndefinedState(), getNotMeaningful()));
+		for (Cache cache : Cache.values()) {
+			long lookups = getLookups(cache);
+			if (lookups > 0)
+				summary.append(String.format("%s cache: %.1f%% hits of %d lookups%n", cache.name().toLowerCase(),
+						100 * getHitRate(cache), lookups));
+		}
+		summary.append(String.format("%-10s %10s %10s %10s %10s%n", "stage", "samples", "mean us", "p50 us",
+				"p99 us"));
+		for (Stage stage : Stage.values()) {
+			summary.append(String.format("%-10s %10d %10.2f %10.2f %10.2f%n", stage.name().toLowerCase(),
+					getSamples(stage), getMeanMicros(stage), getPercentileMicros(stage, 0.5),
+					getPercentileMicros(stage, 0.99)));
+		}
+		return summary.toString();
+	}
+
+	/**
+	 * Registers the metrics as an MBean named {@value #OBJECT_NAME} unless it
+	 * is already registered
+	 * 
+	 * @throws JMException
+	 *             if the MBean can't be registered
+	 */
+	public synchronized void registerMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(OBJECT_NAME);
+		if (!server.isRegistered(name))
+			server.registerMBean(this, name);
+	}
+
+	/**
+	 * Starts printing progress periodically on a daemon thread
+	 * 
+	 * @param intervalMillis
+	 *            time between progress lines in milliseconds
+	 * @param out
+	 *            output of the progress
+	 */
+	public synchronized void startProgressLog(final long intervalMillis, final PrintStream out) {
+		stopProgressLog();
+		progressLogger = new Thread("metrics-progress") {
+			@Override
+			public void run() {
+				try {
+					while (!isInterrupted()) {
+						Thread.sleep(intervalMillis);
+						out.println(getProgress());
+					}
+				} catch (InterruptedException e) {
+					// stopped
+				}
+			}
+		};
+		progressLogger.setDaemon(true);
+		progressLogger.start();
+	}
+
+	/**
+	 * Stops printing progress
+	 */
+	public synchronized void stopProgressLog() {
+		if (progressLogger != null) {
+			progressLogger.interrupt();
+			progressLogger = null;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package metrics;
+
+/**
+ * Management interface of {@link PipelineMetrics}, through which the
+ * progress of a run can be watched with JMX tools such as JConsole.
+ * 
+ */
+public interface PipelineMetricsMBean {
+
+	long getLines();
+
+	long getBytes();
+
+	double getLinesPerSecond();
+
+	double getBytesPerSecond();
+
+	long getDeleted();
+
+	long getDuplicate();
+
+	long getNotEnglish();
+
+	long getUndefinedState();
+
+	long getNotMeaningful();
+
+	long getAccepted();
+
+	double getSentimentCacheHitRate();
+
+	double getLanguageCacheHitRate();
+
+	double getParseMeanMicros();
+
+	double getDedupMeanMicros();
+
+	double getLanguageMeanMicros();
+
+	double getLocateMeanMicros();
+
+	double getScoreMeanMicros();
+
+	String getSummary();
+}
@@ -0,0 +1,174 @@
+package runner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+import data.StateSentimentAggregator;
+
+/**
+ * The class {@code Checkpoint} records how far a twitter stream file was
+ * processed: position after the last processed line together with per-state
+ * totals of all lines before it. The file is identified by its path and
+ * checksum of its first bytes, which don't change while the file grows.
+ * 
+ */
+public class Checkpoint {
+
+	/** Magic number of checkpoint files */
+	private static final int MAGIC = 0x434B5054;
+
+	/** Version of checkpoint format */
+	private static final int VERSION = 1;
+
+	/** Number of first bytes of the stream file, which identify it */
+	private static final int IDENTITY_SIZE = 4096;
+
+	/** Path of the stream file */
+	private final String path;
+
+	/** Number of bytes covered by the checksum */
+	private final int identityLength;
+
+	/** Checksum of the first bytes of the stream file */
+	private final long identity;
+
+	/** Position after the last processed line */
+	private final long offset;
+
+	/** Per-state totals of the processed lines */
+	private final StateSentimentAggregator aggregator;
+
+	private Checkpoint(String path, int identityLength, long identity, long offset,
+			StateSentimentAggregator aggregator) {
+		this.path = path;
+		this.identityLength = identityLength;
+		this.identity = identity;
+		this.offset = offset;
+		this.aggregator = aggregator;
+	}
+
+	/**
+	 * Creates checkpoint of the stream file
+	 * 
+	 * @param file
+	 *            stream file
+	 * @param offset
+	 *            position after the last processed line
+	 * @param aggregator
+	 *            per-state totals of the processed lines
+	 * @return checkpoint
+	 * @throws IOException
+	 *             if the stream file can't be read
+	 */
+	public static Checkpoint of(File file, long offset, StateSentimentAggregator aggregator) throws IOException {
+		int identityLength = (int) Math.min(IDENTITY_SIZE, offset);
+		return new Checkpoint(file.getCanonicalPath(), identityLength, checksum(file, identityLength), offset,
+				aggregator);
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public StateSentimentAggregator getAggregator() {
+		return aggregator;
+	}
+
+	/**
+	 * Checks whether the checkpoint was made for the given file and the
+	 * processed part of the file wasn't changed since then
+	 * 
+	 * @param file
+	 *            stream file
+	 * @return true if processing of the file may continue from the
+	 *         checkpoint
+	 * @throws IOException
+	 *             if the stream file can't be read
+	 */
+	public boolean matches(File file) throws IOException {
+		return path.equals(file.getCanonicalPath()) && file.length() >= offset
+				&& checksum(file, identityLength) == identity;
+	}
+
+	private static long checksum(File file, int length) throws IOException {
+		byte[] bytes = new byte[length];
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			raf.readFully(bytes);
+		} finally {
+			raf.close();
+		}
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return crc.getValue();
+	}
+
+	/**
+	 * Writes checkpoint to the file. The file is replaced only when it is
+	 * completely written, so a crash leaves the previous checkpoint intact.
+	 * 
+	 * @param file
+	 *            checkpoint file
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public void save(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		FileOutputStream stream = new FileOutputStream(temp);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(path);
+			out.writeInt(identityLength);
+			out.writeLong(identity);
+			out.writeLong(offset);
+			aggregator.write(out);
+			out.flush();
+			stream.getFD().sync();
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Reads checkpoint file
+	 * 
+	 * @param file
+	 *            checkpoint file
+	 * @return checkpoint or {@code null} if the file doesn't exist
+	 * @throws IOException
+	 *             if the file can't be read or isn't a checkpoint
+	 */
+	public static Checkpoint load(File file) throws IOException {
+		if (!file.exists())
+			return null;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new IOException(file + " isn't a checkpoint");
+			int version = in.readInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported version of " + file + ": " + version);
+			String path = in.readUTF();
+			int identityLength = in.readInt();
+			long identity = in.readLong();
+			long offset = in.readLong();
+			return new Checkpoint(path, identityLength, identity, offset, StateSentimentAggregator.read(in));
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package runner;
+
+import java.io.File;
+import java.io.IOException;
+
+import tweets.CompressedInput;
+import tweets.LineHandler;
+import tweets.MappedLineReader;
+import tweets.TweetStreamParser;
+import data.StateSentimentAggregator;
+
+/**
+ * The {@code CheckpointedRunner} class processes a twitter stream file in
+ * streaming mode and periodically saves a {@link Checkpoint}, so that a run
+ * which was interrupted may be resumed instead of started over. Checkpoints
+ * are saved after a given number of lines or seconds and at the end of the
+ * run.
+ * <p>
+ * In append mode only complete lines are processed, so that a file which is
+ * still written can be processed again later starting from its new bytes.
+ * Checkpoints need a seekable file, so compressed files aren't supported.
+ * 
+ */
+public class CheckpointedRunner {
+
+	/** Parser of the stream lines */
+	private TweetStreamParser parser;
+
+	/** File where checkpoints are saved */
+	private File checkpointFile;
+
+	/** Number of lines between checkpoints */
+	private long intervalLines;
+
+	/** Time between checkpoints in milliseconds */
+	private long intervalMillis;
+
+	/**
+	 * Creates runner, which saves checkpoints to the given file
+	 * 
+	 * @param parser
+	 *            parser of the stream lines
+	 * @param checkpointFile
+	 *            file where checkpoints are saved
+	 * @param intervalLines
+	 *            number of lines between checkpoints
+	 * @param intervalMillis
+	 *            time between checkpoints in milliseconds
+	 */
+	public CheckpointedRunner(TweetStreamParser parser, File checkpointFile, long intervalLines,
+			long intervalMillis) {
+		this.parser = parser;
+		this.checkpointFile = checkpointFile;
+		this.intervalLines = intervalLines;
+		this.intervalMillis = intervalMillis;
+	}
+
+	/**
+	 * Processes the stream file and returns per-state totals of all its
+	 * processed lines, including those processed before the checkpoint
+	 * 
+	 * @param twitterStreamFile
+	 *            file with Twitter's data
+	 * @param resume
+	 *            whether to continue from the saved checkpoint, if there is
+	 *            one, rather than from the beginning
+	 * @param append
+	 *            whether to stop after the last complete line
+	 * @return per-state totals
+	 * @throws IOException
+	 *             if the file can't be read, the checkpoint can't be saved or
+	 *             it belongs to a different or changed file
+	 */
+	public StateSentimentAggregator process(final File twitterStreamFile, boolean resume, boolean append)
+			throws IOException {
+		if (CompressedInput.detect(twitterStreamFile) != CompressedInput.Format.NONE)
+			throw new IOException("Checkpoints need an uncompressed file: " + twitterStreamFile);
+		final StateSentimentAggregator aggregator;
+		long start = 0;
+		Checkpoint checkpoint = resume ? Checkpoint.load(checkpointFile) : null;
+		if (checkpoint != null) {
+			if (!checkpoint.matches(twitterStreamFile))
+				throw new IOException("Checkpoint " + checkpointFile + " doesn't match " + twitterStreamFile);
+			aggregator = checkpoint.getAggregator();
+			start = checkpoint.getOffset();
+		} else {
+			aggregator = new StateSentimentAggregator();
+		}
+		long end = append ? MappedLineReader.findEndOfLastLine(twitterStreamFile, start) : Long.MAX_VALUE;
+
+		final MappedLineReader reader = new MappedLineReader(twitterStreamFile, start, end);
+		final LineHandler tweetHandler = parser.newLineHandler(aggregator);
+		reader.read(new LineHandler() {
+			/** Number of lines since the last checkpoint */
+			private long lines;
+
+			/** Time of the last checkpoint */
+			private long lastSaved = System.currentTimeMillis();
+
+			@Override
+			public void handle(String line) {
+				tweetHandler.handle(line);
+				if (++lines >= intervalLines || System.currentTimeMillis() - lastSaved >= intervalMillis) {
+					save(twitterStreamFile, reader.getPosition(), aggregator);
+					lines = 0;
+					lastSaved = System.currentTimeMillis();
+				}
+			}
+		});
+		Checkpoint.of(twitterStreamFile, reader.getPosition(), aggregator).save(checkpointFile);
+		return aggregator;
+	}
+
+	/**
+	 * Saves checkpoint from inside of line handler, which can't throw
+	 * checked exceptions
+	 */
+	private void save(File twitterStreamFile, long offset, StateSentimentAggregator aggregator) {
+		try {
+			Checkpoint.of(twitterStreamFile, offset, aggregator).save(checkpointFile);
+		} catch (IOException e) {
+			throw new IllegalStateException("Can't save checkpoint " + checkpointFile, e);
+		}
+	}
+}
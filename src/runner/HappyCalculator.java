@@ -9,6 +9,8 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import states.State;
+import data.SentimentAggregate;
+import data.StateSentimentAggregator;
 import data.Tweet;
 
 public class HappyCalculator {
@@ -31,19 +33,56 @@ public class HappyCalculator {
 	 */
 	public static String getHappiestStateAbbreviation(Map<State, List<Tweet>> stateToTweets)
 			throws FileNotFoundException {
-		stateToHappiness = new EnumMap<State, Double>(State.class);
-		PrintWriter writer = new PrintWriter(new File("sentiments.txt"));
-
+		Map<State, Double> stateToSentiment = new EnumMap<State, Double>(State.class);
 		for (Entry<State, List<Tweet>> s : stateToTweets.entrySet()) {
 			double sentiment = 0;
 			for (Tweet t : s.getValue()) {
 				sentiment += t.getSentiment();
 			}
 			sentiment /= s.getValue().size();
+			stateToSentiment.put(s.getKey(), sentiment);
+		}
+		return getHappiestState(stateToSentiment);
+	}
+
+	/**
+	 * Does the same as {@link #getHappiestStateAbbreviation(Map)}, but takes
+	 * per-state sentiment totals collected while streaming the tweets.
+	 * 
+	 * @param aggregator
+	 *            aggregator of per-state sentiments
+	 * @return abbreviation of the happiest state
+	 * @throws FileNotFoundException
+	 *             if some error occurs while creating file
+	 */
+	public static String getHappiestStateAbbreviation(StateSentimentAggregator aggregator)
+			throws FileNotFoundException {
+		Map<State, Double> stateToSentiment = new EnumMap<State, Double>(State.class);
+		for (Entry<State, SentimentAggregate> s : aggregator.getStateToSentimentMap().entrySet()) {
+			stateToSentiment.put(s.getKey(), s.getValue().getMean());
+		}
+		return getHappiestState(stateToSentiment);
+	}
+
+	/**
+	 * Writes sentiment of each defined state to file and returns the
+	 * abbreviation of the happiest one
+	 * 
+	 * @param stateToSentiment
+	 *            mapping from state to its overall sentiment
+	 * @return abbreviation of the happiest state
+	 * @throws FileNotFoundException
+	 *             if some error occurs while creating file
+	 */
+	private static String getHappiestState(Map<State, Double> stateToSentiment)
+			throws FileNotFoundException {
+		stateToHappiness = new EnumMap<State, Double>(State.class);
+		PrintWriter writer = new PrintWriter(new File("sentiments.txt"));
 
+		for (Entry<State, Double> s : stateToSentiment.entrySet()) {
 			if (s.getKey() != State.Undefined) {
-				stateToHappiness.put(s.getKey(), sentiment);
-				writer.println(s.getKey().toString() + "," + sentiment);
+				stateToHappiness.put(s.getKey(), s.getValue());
+				writer.println(s.getKey().toString() + "," + s.getValue());
 			}
 		}
 		writer.close();
@@ -1,11 +1,106 @@
 package runner;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
 
+import metrics.PipelineMetrics;
+import states.State;
+import states.StateRaster;
+import tweets.DuplicateFilter;
+import tweets.LanguageFilter;
+import tweets.RawTweetHandler;
+import tweets.TextCache;
 import tweets.TweetStreamParser;
+import words.Lexicon;
+import words.LexiconScorer;
 import words.WordsToSentimentBuilder;
+import data.ColumnStore;
+import data.ColumnStoreWriter;
+import data.MultiLexiconAggregator;
+import data.StateSentimentAggregator;
+import data.Tweet;
+import data.WindowedStateSentiment;
 import data.StateToTweetsBuilder;
 
+/**
+ * Usage: {@code Main <words-sentiment-file> <twitter-stream-file>... [options]}
+ * <p>
+ * Words sentiment file is either a text file or a lexicon compiled with
+ * {@link words.LexiconCompiler}. Twitter stream file may be compressed with
+ * gzip, zstd or bzip2. Several files, directories or glob patterns may be
+ * given instead of one file, then the files are processed concurrently by
+ * {@link ShardedJobRunner}; {@code --checkpoint}, {@code --threads},
+ * {@code --resume}, {@code --append} and {@code --tail} apply to one file only
+ * and are rejected then.
+ * <p>
+ * Options:
+ * <ul>
+ * <li>{@code --streaming} processes tweets one at a time keeping only
+ * per-state totals in memory</li>
+ * <li>{@code --threads[=N]} processes the stream in streaming mode on N worker
+ * threads, by default on all available processors; a gzip file is also
+ * decompressed on N threads, otherwise on one</li>
+ * <li>{@code --jobs=N} processes at most N of several files at once, by
+ * default as many as available processors</li>
+ * <li>{@code --snapshot-out=FILE} saves per-state aggregates to a snapshot
+ * file, which can be merged with others by {@link MergeSnapshots}; implies
+ * streaming</li>
+ * <li>{@code --checkpoint=FILE} processes the stream in streaming mode saving
+ * the position in the file with per-state totals to the checkpoint file every
+ * {@code --checkpoint-lines=N} lines (a million by default) or
+ * {@code --checkpoint-seconds=S} seconds (60 by default)</li>
+ * <li>{@code --resume} continues from the checkpoint instead of starting
+ * over</li>
+ * <li>{@code --append} continues from the checkpoint and processes only
+ * complete lines, so that a growing file can be processed again when new
+ * lines are appended</li>
+ * <li>{@code --serve[=PORT]} answers queries over HTTP on the port (8080 by
+ * default) with {@code --server-threads=N} threads while the stream files
+ * are processed, and keeps running after that, see {@link SentimentServer};
+ * if processing fails, the server is stopped and the program exits with
+ * status 1</li>
+ * <li>{@code --metrics[=S]} prints progress every S seconds (10 by default)
+ * and a summary of throughput, drops and stage latencies at the end to the
+ * standard error, the metrics are also available through JMX, see
+ * {@link metrics.PipelineMetrics}</li>
+ * <li>{@code --tail} follows the file as it grows, like {@code tail -f}, and
+ * periodically prints the happiest states over sliding windows of
+ * {@code --windows=M1,M2,...} minutes (5, 60 and 1440 by default) every
+ * {@code --report-seconds=S} seconds (10 by default); only appended lines
+ * are processed unless {@code --from-start} is given</li>
+ * <li>{@code --export=DIR} writes English tweets with their states and
+ * normalized tokens to a {@link data.ColumnStore} in the directory, which can
+ * be rescored quickly with another lexicon</li>
+ * <li>{@code --rescore} reads tweets from the column store given instead of
+ * the twitter stream file and scores them again with the words sentiment
+ * file</li>
+ * <li>{@code --lexicons=FILE,...} scores tweets also with each of the given
+ * words sentiment files in the same pass, taking tokens in pairs, and prints
+ * the happiest state for each of them before the one for the words sentiment
+ * file; works with the twitter stream files or with {@code --rescore}</li>
+ * <li>{@code --raster[=N]} resolves coordinates with a raster of state
+ * boundaries with N cells per degree (20 by default)</li>
+ * <li>{@code --raster-cache=FILE} keeps the raster in a memory-mapped file,
+ * which is rebuilt only when the boundaries change</li>
+ * <li>{@code --phrases} matches the longest words and phrases of any length
+ * instead of scoring tokens in pairs</li>
+ * <li>{@code --dedup[=global|user]} drops retweets and tweets repeating a text
+ * seen within {@code --dedup-hours=H} hours (24 by default) among all tweets
+ * or among tweets of the same user, remembering texts in
+ * {@code --dedup-memory=MB} megabytes (64 by default); with
+ * {@code --dedup-near} near duplicates are dropped too, see
+ * {@link tweets.DuplicateFilter}; the filters aren't checkpointed, so
+ * {@code --dedup} can't be used with {@code --resume} and {@code --append}</li>
+ * <li>{@code --text-cache[=N]} keeps sentiment and language of the last N
+ * distinct texts (a million by default), so that repeated texts are scored
+ * and detected once; hit rates are reported with {@code --metrics}</li>
+ * <li>{@code --prefilter} decides obvious cases by script and stop words
+ * instead of passing every tweet not tagged as English to the language
+ * detector, which is faster but accepts a few mixed-language tweets, see
+ * {@link tweets.LanguageFilter}</li>
+ * </ul>
+ */
 public class Main {
 	public static void main(String[] args) throws FileNotFoundException {
 
@@ -13,13 +108,168 @@ public class Main {
 				File wordsSentiment = new File(args[0]);
 				WordsToSentimentBuilder.loadWordsSentiment(wordsSentiment);
 			
+				List<String> inputs = new ArrayList<String>();
+				int optionsStart = 1;
+				while (optionsStart < args.length && !args[optionsStart].startsWith("--")) {
+					inputs.add(args[optionsStart++]);
+				}
 				File twitterStream = new File(args[1]);
-				TweetStreamParser tweetParser = new TweetStreamParser(twitterStream);
-				StateToTweetsBuilder datasetBuilder = new StateToTweetsBuilder(tweetParser.getListOfTweets());
-				String abbrev =  HappyCalculator.getHappiestStateAbbreviation(datasetBuilder.getStateToTweetsMap());
+				boolean sharded = inputs.size() > 1 || twitterStream.isDirectory()
+						|| ShardedJobRunner.isPattern(args[1]);
+				Options options = new Options(args, optionsStart);
+				if (sharded) {
+					for (String option : new String[] { "checkpoint", "threads", "resume", "append", "tail" }) {
+						if (options.has(option))
+							throw new IllegalArgumentException("--" + option
+									+ " can't be used with several stream files");
+					}
+				}
+				Tweet.setPhraseMatching(options.has("phrases"));
+				LanguageFilter languageFilter = new LanguageFilter("profiles", options.has("prefilter"));
+				if (options.has("text-cache")) {
+					int capacity = options.getInt("text-cache", 1 << 20);
+					Tweet.setSentimentCache(new TextCache(capacity));
+					languageFilter.setCache(new TextCache(capacity));
+				}
+				DuplicateFilter duplicateFilter = null;
+				if (options.has("dedup")) {
+					if (options.has("resume") || options.has("append"))
+						throw new IllegalArgumentException(
+								"--dedup can't be used with --resume or --append, duplicate filters aren't checkpointed");
+					duplicateFilter = new DuplicateFilter(DuplicateFilter.Scope.valueOf(options.get("dedup", "global")
+							.toUpperCase()), options.getInt("dedup-hours", 24) * 3600000L, options.getInt(
+							"dedup-memory", 64) * 1048576L, options.has("dedup-near"));
+				}
+				TweetStreamParser parser = new TweetStreamParser(languageFilter);
+				parser.setDuplicateFilter(duplicateFilter);
+				if (options.has("raster") || options.has("raster-cache")) {
+					int cellsPerDegree = options.getInt("raster", 20);
+					String cacheFile = options.get("raster-cache", null);
+					State.setRaster(cacheFile == null ? StateRaster.build(cellsPerDegree) : StateRaster.load(
+							new File(cacheFile), cellsPerDegree));
+				}
+				boolean metrics = options.has("metrics");
+				if (metrics) {
+					PipelineMetrics.get().registerMBean();
+					PipelineMetrics.get().reset();
+					PipelineMetrics.get().startProgressLog(options.getInt("metrics", 10) * 1000L, System.err);
+				}
+				if (options.has("serve")) {
+					SentimentServer server = new SentimentServer(options.getInt("serve", 8080), options.getInt(
+							"server-threads", Runtime.getRuntime().availableProcessors()));
+					server.start();
+					System.err.println("Serving queries on port " + options.getInt("serve", 8080));
+					StateSentimentAggregator aggregator = new StateSentimentAggregator();
+					RawTweetHandler handler = server.newIngestingHandler(aggregator);
+					try {
+						for (File file : ShardedJobRunner.expand(inputs)) {
+							parser.parse(file, handler);
+						}
+					} catch (Exception e) {
+						// otherwise the server would answer with totals of a part of the stream
+						server.stop(0);
+						e.printStackTrace();
+						System.exit(1);
+					}
+					server.publish(aggregator);
+					System.err.println("Ingested " + server.getSnapshot().getTweetsCount() + " tweets");
+					if (metrics) {
+						PipelineMetrics.get().stopProgressLog();
+						System.err.print(PipelineMetrics.get().getSummary());
+					}
+					return;
+				}
+				if (options.has("tail")) {
+					String[] windowsOption = options.get("windows", "5,60,1440").split(",");
+					int[] windowMinutes = new int[windowsOption.length];
+					for (int i = 0; i < windowsOption.length; i++) {
+						windowMinutes[i] = Integer.parseInt(windowsOption[i].trim());
+					}
+					TailRunner runner = new TailRunner(parser,
+							new WindowedStateSentiment(windowMinutes), options.getInt("poll-millis", 500),
+							options.getInt("report-seconds", 10) * 1000L, System.out);
+					runner.follow(twitterStream, options.has("from-start"));
+					return;
+				}
+				String abbrev;
+				StateSentimentAggregator aggregator = null;
+				if (options.has("export")) {
+					File directory = new File(options.get("export", null));
+					ColumnStoreWriter writer = new ColumnStoreWriter(directory);
+					for (File file : ShardedJobRunner.expand(inputs)) {
+						parser.parse(file, writer);
+					}
+					writer.close();
+					System.err.println("Exported " + writer.getTweetsCount() + " tweets to " + directory);
+				}
+				File storeDirectory = options.has("export") ? new File(options.get("export", null)) : options
+						.has("rescore") ? twitterStream : null;
+				if (options.has("lexicons")) {
+					String[] files = options.get("lexicons", "").split(",");
+					List<Lexicon> lexicons = new ArrayList<Lexicon>();
+					lexicons.add(WordsToSentimentBuilder.getLexicon());
+					for (String file : files) {
+						lexicons.add(WordsToSentimentBuilder.readLexicon(new File(file)));
+					}
+					List<StateSentimentAggregator> aggregators;
+					if (storeDirectory != null) {
+						ColumnStore store = new ColumnStore(storeDirectory);
+						List<LexiconScorer> scorers = new ArrayList<LexiconScorer>();
+						for (Lexicon lexicon : lexicons) {
+							scorers.add(new LexiconScorer(lexicon, store.getInterner()));
+						}
+						aggregators = store.rescore(scorers);
+					} else {
+						MultiLexiconAggregator multiAggregator = MultiLexiconAggregator.forLexicons(lexicons);
+						for (File file : ShardedJobRunner.expand(inputs)) {
+							parser.parse(file, multiAggregator);
+						}
+						aggregators = multiAggregator.getAggregators();
+					}
+					for (int i = 0; i < files.length; i++) {
+						System.out.println(files[i] + ": "
+								+ HappyCalculator.getHappiestStateAbbreviation(aggregators.get(i + 1)));
+					}
+					aggregator = aggregators.get(0);
+				} else if (storeDirectory != null) {
+					ColumnStore store = new ColumnStore(storeDirectory);
+					aggregator = options.has("phrases") ? store.rescore(WordsToSentimentBuilder.getLexiconTrie())
+							: store.rescore(WordsToSentimentBuilder.getLexicon());
+				} else if (sharded) {
+					int jobsCount = options.getInt("jobs", Runtime.getRuntime().availableProcessors());
+					ShardedJobRunner runner = new ShardedJobRunner(parser, jobsCount);
+					aggregator = runner.process(ShardedJobRunner.expand(inputs));
+				} else if (options.has("checkpoint")) {
+					CheckpointedRunner runner = new CheckpointedRunner(parser, new File(options.get(
+							"checkpoint", null)), options.getInt("checkpoint-lines", 1000000),
+							options.getInt("checkpoint-seconds", 60) * 1000L);
+					boolean append = options.has("append");
+					aggregator = runner.process(twitterStream, append || options.has("resume"), append);
+				} else if (options.has("threads")) {
+					int threadsCount = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+					ParallelTweetProcessor processor = new ParallelTweetProcessor(parser, threadsCount);
+					aggregator = processor.process(twitterStream);
+				} else if (options.has("streaming") || options.has("snapshot-out")) {
+					aggregator = new StateSentimentAggregator();
+					parser.parse(twitterStream, aggregator);
+				}
+				if (aggregator != null) {
+					abbrev = HappyCalculator.getHappiestStateAbbreviation(aggregator);
+					if (options.has("snapshot-out"))
+						aggregator.save(new File(options.get("snapshot-out", null)));
+				} else {
+					TweetStreamParser tweetParser = new TweetStreamParser(twitterStream, languageFilter,
+							duplicateFilter);
+					StateToTweetsBuilder datasetBuilder = new StateToTweetsBuilder(tweetParser.getListOfTweets());
+					abbrev =  HappyCalculator.getHappiestStateAbbreviation(datasetBuilder.getStateToTweetsMap());
+				}
+				if (metrics) {
+					PipelineMetrics.get().stopProgressLog();
+					System.err.print(PipelineMetrics.get().getSummary());
+				}
 				System.out.println(abbrev);
 			} catch (Exception e) {
 				e.printStackTrace();
 			}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+package runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import data.StateSentimentAggregator;
+
+/**
+ * Merges per-state sentiment snapshots written by {@code Main} with
+ * {@code --snapshot-out}, for example daily ones into a weekly or monthly
+ * one, and prints the happiest state of the merged data without
+ * reprocessing the tweets. Snapshots may be given as files, directories or
+ * glob patterns.
+ * <p>
+ * Usage: {@code MergeSnapshots <snapshot-file>... [--out=FILE]}
+ * <p>
+ * Options:
+ * <ul>
+ * <li>{@code --out=FILE} saves the merged snapshot</li>
+ * </ul>
+ * 
+ */
+public class MergeSnapshots {
+
+	public static void main(String[] args) throws IOException {
+		List<String> inputs = new ArrayList<String>();
+		int optionsStart = 0;
+		while (optionsStart < args.length && !args[optionsStart].startsWith("--")) {
+			inputs.add(args[optionsStart++]);
+		}
+		if (inputs.isEmpty()) {
+			System.err.println("Usage: MergeSnapshots <snapshot-file>... [--out=FILE]");
+			System.exit(1);
+		}
+		Options options = new Options(args, optionsStart);
+
+		StateSentimentAggregator merged = new StateSentimentAggregator();
+		for (File file : ShardedJobRunner.expand(inputs)) {
+			merged.merge(StateSentimentAggregator.load(file));
+		}
+		String out = options.get("out", null);
+		if (out != null)
+			merged.save(new File(out));
+		System.out.println(HappyCalculator.getHappiestStateAbbreviation(merged));
+	}
+}
@@ -0,0 +1,53 @@
+package runner;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The class {@code Options} holds optional command line arguments, which are
+ * given in the form {@code --name} or {@code --name=value}.
+ * 
+ */
+public class Options {
+
+	/** Mapping from option name to its value */
+	private Map<String, String> options;
+
+	/**
+	 * Parses options from the command line arguments
+	 * 
+	 * @param args
+	 *            command line arguments
+	 * @param from
+	 *            index of the first optional argument
+	 * @throws IllegalArgumentException
+	 *             if some argument is not an option
+	 */
+	public Options(String[] args, int from) {
+		options = new HashMap<String, String>();
+		for (int i = from; i < args.length; i++) {
+			String arg = args[i];
+			if (!arg.startsWith("--"))
+				throw new IllegalArgumentException("Unknown argument: " + arg);
+			int separator = arg.indexOf('=');
+			if (separator < 0)
+				options.put(arg.substring(2), "");
+			else
+				options.put(arg.substring(2, separator), arg.substring(separator + 1));
+		}
+	}
+
+	public boolean has(String name) {
+		return options.containsKey(name);
+	}
+
+	public String get(String name, String defaultValue) {
+		String value = options.get(name);
+		return value == null || value.isEmpty() ? defaultValue : value;
+	}
+
+	public int getInt(String name, int defaultValue) {
+		String value = options.get(name);
+		return value == null || value.isEmpty() ? defaultValue : Integer.parseInt(value);
+	}
+}
@@ -0,0 +1,287 @@
+package runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import tweets.CompressedInput;
+import tweets.LineHandler;
+import tweets.LineReader;
+import tweets.MappedLineReader;
+import tweets.TweetStreamParser;
+import data.StateSentimentAggregator;
+
+/**
+ * The {@code ParallelTweetProcessor} class processes twitter stream on several
+ * cores. A file is divided into ranges aligned to line boundaries and each
+ * worker reads its own range through a {@link MappedLineReader}. Streams which
+ * can't be divided are read by the calling thread, which hands batches of
+ * lines to the workers. Each worker parses, filters and scores its tweets into
+ * its own {@link StateSentimentAggregator}, and the aggregators are merged when
+ * the stream is over. Since per-state totals are integer sums, the result
+ * doesn't depend on the order in which tweets are processed and matches the
+ * single threaded one exactly. The exception is dropping of duplicates with
+ * {@code --dedup}: workers check tweets against the shared
+ * {@link tweets.DuplicateFilter} in no particular order, so another copy of a
+ * text may be kept than in the stream order, and two copies checked at once
+ * may both pass. When a worker fails, the other workers and the reader stop
+ * and the failure is thrown.
+ * 
+ */
+public class ParallelTweetProcessor {
+
+	/** Number of lines handed to a worker at once */
+	private static final int BATCH_SIZE = 512;
+
+	/** Number of batches per worker which may wait in the queue */
+	private static final int QUEUED_BATCHES_PER_WORKER = 4;
+
+	/** Marker of the end of the stream */
+	private static final List<String> END_OF_STREAM = new ArrayList<String>();
+
+	/** Parser shared by all workers */
+	private TweetStreamParser parser;
+
+	/** Number of worker threads */
+	private int threadsCount;
+
+	/**
+	 * Creates processor with the given number of worker threads
+	 * 
+	 * @param parser
+	 *            parser of the stream lines
+	 * @param threadsCount
+	 *            number of worker threads
+	 */
+	public ParallelTweetProcessor(TweetStreamParser parser, int threadsCount) {
+		if (threadsCount < 1)
+			throw new IllegalArgumentException("Number of threads must be positive: " + threadsCount);
+		this.parser = parser;
+		this.threadsCount = threadsCount;
+	}
+
+	/**
+	 * Processes twitter stream file and returns per-state sentiment totals.
+	 * Each worker reads its own range of a plain file, compressed files are
+	 * decompressed by one reader, gzip files on as many threads as there are
+	 * workers.
+	 * 
+	 * @param twitterStreamFile
+	 *            file with Twitter's data
+	 * @return aggregator with merged results of all workers
+	 * @throws IOException
+	 *             if twitterStream file can't be read
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for
+	 *             workers
+	 */
+	public StateSentimentAggregator process(File twitterStreamFile) throws IOException,
+			InterruptedException {
+		if (CompressedInput.detect(twitterStreamFile) != CompressedInput.Format.NONE)
+			return process(CompressedInput.openReader(twitterStreamFile, threadsCount));
+		long[] bounds = MappedLineReader.split(twitterStreamFile, threadsCount);
+		AtomicBoolean failed = new AtomicBoolean();
+		Worker[] workers = new Worker[bounds.length - 1];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new RangeWorker(new MappedLineReader(twitterStreamFile, bounds[i], bounds[i + 1]),
+					failed);
+			workers[i].setName("tweet-worker-" + i);
+			workers[i].start();
+		}
+		return merge(workers);
+	}
+
+	/**
+	 * Processes lines of the reader and returns per-state sentiment totals.
+	 * The calling thread reads the lines and hands them to the workers in
+	 * batches.
+	 * 
+	 * @param reader
+	 *            source of stream lines
+	 * @return aggregator with merged results of all workers
+	 * @throws IOException
+	 *             if the lines can't be read
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for
+	 *             workers
+	 */
+	public StateSentimentAggregator process(LineReader reader) throws IOException,
+			InterruptedException {
+		final BlockingQueue<List<String>> batches = new ArrayBlockingQueue<List<String>>(threadsCount
+				* QUEUED_BATCHES_PER_WORKER);
+		final AtomicBoolean failed = new AtomicBoolean();
+		Worker[] workers = new Worker[threadsCount];
+		for (int i = 0; i < threadsCount; i++) {
+			workers[i] = new BatchWorker(batches, failed);
+			workers[i].setName("tweet-worker-" + i);
+			workers[i].start();
+		}
+
+		final List<List<String>> batch = new ArrayList<List<String>>(1);
+		batch.add(new ArrayList<String>(BATCH_SIZE));
+		try {
+			reader.read(new LineHandler() {
+				@Override
+				public void handle(String line) {
+					List<String> lines = batch.get(0);
+					lines.add(line);
+					if (lines.size() == BATCH_SIZE) {
+						put(batches, lines, failed);
+						batch.set(0, new ArrayList<String>(BATCH_SIZE));
+					}
+				}
+			});
+			if (!batch.get(0).isEmpty())
+				put(batches, batch.get(0), failed);
+		} catch (Stopped e) {
+			// the failure of the worker is thrown by merge
+		} finally {
+			for (int i = 0; i < threadsCount; i++) {
+				batches.put(END_OF_STREAM);
+			}
+		}
+		return merge(workers);
+	}
+
+	/**
+	 * Puts the batch into the queue, waiting for free space unless some worker
+	 * fails
+	 * 
+	 * @throws Stopped
+	 *             if some worker failed
+	 */
+	private static void put(BlockingQueue<List<String>> batches, List<String> batch, AtomicBoolean failed) {
+		try {
+			while (!batches.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+				if (failed.get())
+					throw new Stopped();
+			}
+			if (failed.get())
+				throw new Stopped();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while reading the stream", e);
+		}
+	}
+
+	/**
+	 * Stops reading of lines after a failure of some worker
+	 */
+	private static class Stopped extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Waits for the workers and merges their results
+	 */
+	private static StateSentimentAggregator merge(Worker[] workers) throws InterruptedException {
+		StateSentimentAggregator result = new StateSentimentAggregator();
+		for (Worker worker : workers) {
+			worker.join();
+			if (worker.failure != null)
+				throw new IllegalStateException("Worker " + worker.getName() + " failed", worker.failure);
+			result.merge(worker.aggregator);
+		}
+		return result;
+	}
+
+	/**
+	 * Worker thread, which processes lines into its own aggregator
+	 */
+	private abstract class Worker extends Thread {
+		/** Per-state totals of the tweets processed by this worker */
+		protected StateSentimentAggregator aggregator = new StateSentimentAggregator();
+
+		/** Handler of lines, which reuses one tweet for all lines */
+		protected LineHandler handler = parser.newLineHandler(aggregator);
+
+		/** Error which stopped processing, if any */
+		protected volatile Throwable failure;
+
+		/** Indicates whether some worker failed, shared by all workers */
+		protected final AtomicBoolean failed;
+
+		Worker(AtomicBoolean failed) {
+			this.failed = failed;
+		}
+
+		/**
+		 * Records the failure and stops the other workers
+		 */
+		protected void fail(Throwable e) {
+			failure = e;
+			failed.set(true);
+		}
+	}
+
+	/**
+	 * Worker thread, which reads its own range of the file
+	 */
+	private class RangeWorker extends Worker {
+		/** Reader of the range */
+		private LineReader reader;
+
+		RangeWorker(LineReader reader, AtomicBoolean failed) {
+			super(failed);
+			this.reader = reader;
+		}
+
+		@Override
+		public void run() {
+			try {
+				reader.read(new LineHandler() {
+					@Override
+					public void handle(String line) {
+						if (failed.get())
+							throw new Stopped();
+						handler.handle(line);
+					}
+				});
+			} catch (Stopped e) {
+				// another worker failed
+			} catch (Throwable e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Worker thread, which processes batches of lines from the queue
+	 */
+	private class BatchWorker extends Worker {
+		/** Queue of batches shared by workers */
+		private BlockingQueue<List<String>> batches;
+
+		BatchWorker(BlockingQueue<List<String>> batches, AtomicBoolean failed) {
+			super(failed);
+			this.batches = batches;
+		}
+
+		@Override
+		public void run() {
+			try {
+				List<String> batch;
+				while ((batch = batches.take()) != END_OF_STREAM) {
+					// after a failure the queue is still drained so the reader
+					// doesn't block until it notices the failure
+					if (failed.get())
+						continue;
+					try {
+						for (String line : batch) {
+							handler.handle(line);
+						}
+					} catch (Throwable e) {
+						fail(e);
+					}
+				}
+			} catch (InterruptedException e) {
+				fail(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package runner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import states.State;
+import tweets.RawTweet;
+import tweets.RawTweetHandler;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import data.SentimentAggregate;
+import data.SentimentSnapshot;
+import data.StateSentimentAggregator;
+import data.Tweet;
+
+/**
+ * The {@code SentimentServer} class answers queries about per-state sentiment
+ * over HTTP while tweets are still being processed. The ingesting thread
+ * periodically publishes an immutable {@link SentimentSnapshot} through a
+ * volatile field, so queries never wait for ingestion and ingestion never
+ * waits for queries.
+ * <p>
+ * Endpoints, all answering in JSON:
+ * <ul>
+ * <li>{@code /happiest} - the happiest state</li>
+ * <li>{@code /ranking} - all states from the happiest to the least happy</li>
+ * <li>{@code /state?name=NH} - statistics of the state given by abbreviation
+ * or name</li>
+ * <li>{@code /score?text=...} - sentiment of the text</li>
+ * </ul>
+ * 
+ */
+public class SentimentServer {
+
+	/** Largest number of tweets between published snapshots */
+	private static final int PUBLISH_INTERVAL_TWEETS = 10000;
+
+	/** Largest time between published snapshots in milliseconds */
+	private static final long PUBLISH_INTERVAL_MILLIS = 200;
+
+	/** Serializer of responses */
+	private static final Gson gson = new Gson();
+
+	/** The latest published snapshot */
+	private volatile SentimentSnapshot snapshot = SentimentSnapshot.EMPTY;
+
+	/** HTTP server */
+	private HttpServer server;
+
+	/** Threads answering queries */
+	private ExecutorService executor;
+
+	/**
+	 * Creates server listening on the given port
+	 * 
+	 * @param port
+	 *            port to listen on
+	 * @param threadsCount
+	 *            number of threads answering queries
+	 * @throws IOException
+	 *             if the port can't be bound
+	 */
+	public SentimentServer(int port, int threadsCount) throws IOException {
+		// headers and body of a response are written separately, which
+		// without TCP_NODELAY delays every response until the client's ACK
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		executor = Executors.newFixedThreadPool(threadsCount);
+		server.setExecutor(executor);
+		server.createContext("/happiest", new JsonHandler() {
+			@Override
+			Object answer(Map<String, String> query) {
+				SentimentSnapshot current = snapshot;
+				State happiest = current.getHappiest();
+				return happiest == null ? null : describe(current, happiest);
+			}
+		});
+		server.createContext("/ranking", new JsonHandler() {
+			@Override
+			Object answer(Map<String, String> query) {
+				SentimentSnapshot current = snapshot;
+				List<Object> ranking = new ArrayList<Object>();
+				for (State state : current.getRanking()) {
+					ranking.add(describe(current, state));
+				}
+				return ranking;
+			}
+		});
+		server.createContext("/state", new JsonHandler() {
+			@Override
+			Object answer(Map<String, String> query) {
+				String name = query.get("name");
+				State state = name == null ? null : State.abbreviationToState(name.toUpperCase());
+				if (state == null) {
+					for (State s : State.values()) {
+						if (s.name().equalsIgnoreCase(name))
+							state = s;
+					}
+				}
+				if (state == null)
+					throw new IllegalArgumentException("Unknown state: " + name);
+				return describeInDetail(snapshot, state);
+			}
+		});
+		server.createContext("/score", new JsonHandler() {
+			@Override
+			Object answer(Map<String, String> query) {
+				String text = query.get("text");
+				if (text == null)
+					throw new IllegalArgumentException("Parameter text is required");
+				RawTweet rawTweet = new RawTweet();
+				rawTweet.setText(text);
+				Tweet tweet = new Tweet(State.Undefined, rawTweet);
+				Map<String, Object> result = new LinkedHashMap<String, Object>();
+				result.put("sentiment", (int) tweet.getSentiment());
+				result.put("meaningful", tweet.isMeaningful());
+				return result;
+			}
+		});
+	}
+
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops the server waiting at most the given time for queries being
+	 * answered
+	 * 
+	 * @param delaySeconds
+	 *            time to wait in seconds
+	 */
+	public void stop(int delaySeconds) {
+		server.stop(delaySeconds);
+		executor.shutdown();
+	}
+
+	/**
+	 * Publishes snapshot of the aggregator totals. Must be called by the
+	 * thread which updates the aggregator.
+	 * 
+	 * @param aggregator
+	 *            aggregator of per-state sentiments
+	 */
+	public void publish(StateSentimentAggregator aggregator) {
+		snapshot = new SentimentSnapshot(aggregator, System.currentTimeMillis());
+	}
+
+	/**
+	 * Creates handler of tweets, which adds them to the aggregator and
+	 * publishes its snapshots every few thousand tweets or fractions of a
+	 * second
+	 * 
+	 * @param aggregator
+	 *            aggregator of per-state sentiments
+	 * @return handler of tweets to be used by one ingesting thread
+	 */
+	public RawTweetHandler newIngestingHandler(final StateSentimentAggregator aggregator) {
+		return new RawTweetHandler() {
+			/** Number of tweets since the last snapshot */
+			private int tweets;
+
+			/** Time of the last snapshot */
+			private long lastPublished = System.currentTimeMillis();
+
+			@Override
+			public void handle(RawTweet tweet) {
+				aggregator.handle(tweet);
+				if (++tweets >= PUBLISH_INTERVAL_TWEETS
+						|| System.currentTimeMillis() - lastPublished >= PUBLISH_INTERVAL_MILLIS) {
+					publish(aggregator);
+					tweets = 0;
+					lastPublished = System.currentTimeMillis();
+				}
+			}
+		};
+	}
+
+	public SentimentSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	private static Map<String, Object> describe(SentimentSnapshot snapshot, State state) {
+		Map<String, Object> result = new LinkedHashMap<String, Object>();
+		result.put("state", state.getAbbreviation());
+		result.put("name", state.name());
+		SentimentAggregate aggregate = snapshot.getAggregate(state);
+		result.put("count", aggregate == null ? 0 : aggregate.getCount());
+		if (aggregate != null && aggregate.getCount() > 0)
+			result.put("mean", aggregate.getMean());
+		return result;
+	}
+
+	private static Map<String, Object> describeInDetail(SentimentSnapshot snapshot, State state) {
+		Map<String, Object> result = describe(snapshot, state);
+		SentimentAggregate aggregate = snapshot.getAggregate(state);
+		if (aggregate != null && aggregate.getCount() > 0) {
+			result.put("rank", snapshot.getRanking().indexOf(state) + 1);
+			result.put("sum", aggregate.getSum());
+			result.put("variance", aggregate.getVariance());
+			result.put("min", aggregate.getMin());
+			result.put("max", aggregate.getMax());
+			Map<String, Long> histogram = new LinkedHashMap<String, Long>();
+			for (int s = -SentimentAggregate.HISTOGRAM_LIMIT; s <= SentimentAggregate.HISTOGRAM_LIMIT; s++) {
+				long count = aggregate.getHistogramCount(s);
+				if (count != 0)
+					histogram.put(Integer.toString(s), count);
+			}
+			result.put("histogram", histogram);
+		}
+		result.put("snapshotTime", snapshot.getTimeMillis());
+		return result;
+	}
+
+	/**
+	 * Handler of GET requests, which answers with JSON
+	 */
+	private abstract static class JsonHandler implements HttpHandler {
+
+		/**
+		 * Answers the query
+		 * 
+		 * @param query
+		 *            parameters of the query
+		 * @return object to be serialized or {@code null} for not found
+		 * @throws IllegalArgumentException
+		 *             if the query is invalid
+		 */
+		abstract Object answer(Map<String, String> query);
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			int status = 200;
+			String body;
+			try {
+				if (!"GET".equals(exchange.getRequestMethod())) {
+					status = 405;
+					body = error("Only GET is supported");
+				} else {
+					Object answer = answer(parseQuery(exchange.getRequestURI().getRawQuery()));
+					if (answer == null) {
+						status = 404;
+						body = error("No data");
+					} else {
+						body = gson.toJson(answer);
+					}
+				}
+			} catch (IllegalArgumentException e) {
+				status = 400;
+				body = error(e.getMessage());
+			} catch (RuntimeException e) {
+				status = 500;
+				body = error(e.toString());
+			}
+			byte[] bytes = body.getBytes("UTF-8");
+			exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+			exchange.sendResponseHeaders(status, bytes.length);
+			OutputStream out = exchange.getResponseBody();
+			try {
+				out.write(bytes);
+			} finally {
+				out.close();
+			}
+		}
+
+		private static String error(String message) {
+			Map<String, String> error = new HashMap<String, String>();
+			error.put("error", message);
+			return gson.toJson(error);
+		}
+
+		private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+			Map<String, String> parameters = new HashMap<String, String>();
+			if (query == null)
+				return parameters;
+			for (String pair : query.split("&")) {
+				int separator = pair.indexOf('=');
+				if (separator < 0)
+					parameters.put(URLDecoder.decode(pair, "UTF-8"), "");
+				else
+					parameters.put(URLDecoder.decode(pair.substring(0, separator), "UTF-8"),
+							URLDecoder.decode(pair.substring(separator + 1), "UTF-8"));
+			}
+			return parameters;
+		}
+	}
+}
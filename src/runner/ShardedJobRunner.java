@@ -0,0 +1,200 @@
+package runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import tweets.TweetStreamParser;
+import data.StateSentimentAggregator;
+
+/**
+ * The {@code ShardedJobRunner} class processes many twitter stream files,
+ * such as hourly dumps, in one run. Files are processed concurrently by a
+ * bounded number of jobs, each file into its own
+ * {@link StateSentimentAggregator}, and the partial aggregates are merged as
+ * soon as their files are done.
+ * 
+ */
+public class ShardedJobRunner {
+
+	/** Parser shared by all jobs */
+	private TweetStreamParser parser;
+
+	/** Number of files processed at once */
+	private int jobsCount;
+
+	/**
+	 * Creates runner, which processes the given number of files at once
+	 * 
+	 * @param parser
+	 *            parser of the stream lines
+	 * @param jobsCount
+	 *            number of concurrently processed files
+	 */
+	public ShardedJobRunner(TweetStreamParser parser, int jobsCount) {
+		if (jobsCount < 1)
+			throw new IllegalArgumentException("Number of jobs must be positive: " + jobsCount);
+		this.parser = parser;
+		this.jobsCount = jobsCount;
+	}
+
+	/**
+	 * Processes the files and returns merged per-state sentiment totals
+	 * 
+	 * @param files
+	 *            files with Twitter's data
+	 * @return aggregator with merged results of all files
+	 * @throws IOException
+	 *             if some file can't be read
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for jobs
+	 */
+	public StateSentimentAggregator process(List<File> files) throws IOException, InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(jobsCount, Math.max(1, files.size())));
+		try {
+			CompletionService<StateSentimentAggregator> jobs = new ExecutorCompletionService<StateSentimentAggregator>(
+					executor);
+			for (final File file : files) {
+				jobs.submit(new Callable<StateSentimentAggregator>() {
+					@Override
+					public StateSentimentAggregator call() throws IOException {
+						StateSentimentAggregator aggregator = new StateSentimentAggregator();
+						try {
+							parser.parse(file, aggregator);
+						} catch (RuntimeException e) {
+							throw new IllegalStateException("Failed to process " + file, e);
+						} catch (IOException e) {
+							throw new IOException("Failed to read " + file, e);
+						}
+						return aggregator;
+					}
+				});
+			}
+			StateSentimentAggregator result = new StateSentimentAggregator();
+			for (int i = 0; i < files.size(); i++) {
+				try {
+					result.merge(jobs.take().get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof IOException)
+						throw (IOException) e.getCause();
+					throw (RuntimeException) e.getCause();
+				}
+			}
+			return result;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Checks whether the argument is a glob pattern rather than a file name
+	 * 
+	 * @param arg
+	 *            command line argument
+	 * @return true if the argument contains glob characters
+	 */
+	public static boolean isPattern(String arg) {
+		for (int i = 0; i < arg.length(); i++) {
+			char c = arg.charAt(i);
+			if (c == '*' || c == '?' || c == '[' || c == '{')
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Expands files, directories and glob patterns into a sorted list of
+	 * files. Directories are searched recursively, hidden files are skipped.
+	 * Glob patterns use the syntax of {@link java.nio.file.FileSystem#getPathMatcher(String)},
+	 * so that {@code **} matches across directories.
+	 * 
+	 * @param args
+	 *            file names, directory names and glob patterns
+	 * @return list of files
+	 * @throws IOException
+	 *             if a directory can't be read or some argument matches
+	 *             nothing
+	 */
+	public static List<File> expand(List<String> args) throws IOException {
+		Set<File> files = new LinkedHashSet<File>();
+		for (String arg : args) {
+			List<File> matched = new ArrayList<File>();
+			if (isPattern(arg))
+				expandPattern(arg, matched);
+			else if (new File(arg).isDirectory())
+				expandDirectory(Paths.get(arg), null, matched);
+			else if (new File(arg).isFile())
+				matched.add(new File(arg));
+			if (matched.isEmpty())
+				throw new IOException("No twitter stream files found: " + arg);
+			Collections.sort(matched);
+			files.addAll(matched);
+		}
+		return new ArrayList<File>(files);
+	}
+
+	/**
+	 * Adds files matching the glob pattern, which is searched from its
+	 * longest prefix without glob characters
+	 */
+	private static void expandPattern(String pattern, List<File> matched) throws IOException {
+		String[] parts = pattern.split("/", -1);
+		StringBuilder base = new StringBuilder();
+		int i = 0;
+		while (i < parts.length - 1 && !isPattern(parts[i])) {
+			base.append(parts[i]).append('/');
+			i++;
+		}
+		StringBuilder rest = new StringBuilder();
+		for (int j = i; j < parts.length; j++) {
+			if (j > i)
+				rest.append('/');
+			rest.append(parts[j]);
+		}
+		Path dir = Paths.get(base.length() == 0 ? "." : base.toString());
+		if (Files.isDirectory(dir))
+			expandDirectory(dir, FileSystems.getDefault().getPathMatcher("glob:" + rest), matched);
+	}
+
+	/**
+	 * Adds files of the directory and its subdirectories, which relative
+	 * paths match the matcher
+	 */
+	private static void expandDirectory(final Path dir, final PathMatcher matcher, final List<File> matched)
+			throws IOException {
+		Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attrs) {
+				if (!path.equals(dir) && path.getFileName().toString().startsWith("."))
+					return FileVisitResult.SKIP_SUBTREE;
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+				if (attrs.isRegularFile() && !path.getFileName().toString().startsWith(".")
+						&& (matcher == null || matcher.matches(dir.relativize(path))))
+					matched.add(path.toFile());
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+}
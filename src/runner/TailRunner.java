@@ -0,0 +1,141 @@
+package runner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+import states.State;
+import tweets.LineHandler;
+import tweets.MappedLineReader;
+import tweets.TweetStreamParser;
+import data.WindowedStateSentiment;
+
+/**
+ * The {@code TailRunner} class follows a twitter stream file, which a
+ * collector keeps appending to, like {@code tail -f}. New complete lines are
+ * processed as soon as the file grows and their tweets are added to
+ * {@link WindowedStateSentiment} at the time they were posted, so windows
+ * move with the tweets rather than the clock and a file followed from its
+ * beginning isn't expired at once. Rankings of the happiest states in each
+ * window are printed periodically. If the file becomes shorter than the
+ * processed part, it is considered truncated or replaced and is followed
+ * from its beginning.
+ * 
+ */
+public class TailRunner {
+
+	/** Number of states printed for each window */
+	private static final int REPORTED_STATES = 5;
+
+	/** Parser of the stream lines */
+	private TweetStreamParser parser;
+
+	/** Per-state sentiment in the windows */
+	private WindowedStateSentiment windows;
+
+	/** Time between checks of the file size in milliseconds */
+	private long pollMillis;
+
+	/** Time between reports in milliseconds */
+	private long reportMillis;
+
+	/** Output of the reports */
+	private PrintStream out;
+
+	/**
+	 * Creates runner, which polls the file and prints reports with the given
+	 * intervals
+	 * 
+	 * @param parser
+	 *            parser of the stream lines
+	 * @param windows
+	 *            per-state sentiment in the windows
+	 * @param pollMillis
+	 *            time between checks of the file size in milliseconds
+	 * @param reportMillis
+	 *            time between reports in milliseconds
+	 * @param out
+	 *            output of the reports
+	 */
+	public TailRunner(TweetStreamParser parser, WindowedStateSentiment windows, long pollMillis,
+			long reportMillis, PrintStream out) {
+		this.parser = parser;
+		this.windows = windows;
+		this.pollMillis = pollMillis;
+		this.reportMillis = reportMillis;
+		this.out = out;
+	}
+
+	/**
+	 * Follows the file until the thread is interrupted
+	 * 
+	 * @param twitterStreamFile
+	 *            file with Twitter's data
+	 * @param fromStart
+	 *            whether to process the lines which are already in the file
+	 *            rather than only the appended ones
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public void follow(File twitterStreamFile, boolean fromStart) throws IOException {
+		long offset = fromStart ? 0 : MappedLineReader.findEndOfLastLine(twitterStreamFile, 0);
+		LineHandler handler = parser.newLineHandler(windows);
+		long lastReport = System.currentTimeMillis();
+		while (!Thread.currentThread().isInterrupted()) {
+			long now = System.currentTimeMillis();
+			long length = twitterStreamFile.length();
+			if (length < offset) {
+				System.err.println(twitterStreamFile + " was truncated, following it from the beginning");
+				offset = 0;
+			}
+			long end = MappedLineReader.findEndOfLastLine(twitterStreamFile, offset);
+			boolean grown = end > offset;
+			if (grown) {
+				new MappedLineReader(twitterStreamFile, offset, end).read(handler);
+				offset = end;
+			}
+			if (now - lastReport >= reportMillis) {
+				report();
+				lastReport = now;
+			}
+			if (!grown) {
+				try {
+					Thread.sleep(pollMillis);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Prints the happiest states of each window
+	 */
+	void report() {
+		StringBuilder report = new StringBuilder();
+		for (int w = 0; w < windows.getWindowsCount(); w++) {
+			report.append(formatMinutes(windows.getWindowMinutes(w))).append(':');
+			List<State> ranking = windows.getRanking(w);
+			for (int i = 0; i < Math.min(REPORTED_STATES, ranking.size()); i++) {
+				State state = ranking.get(i);
+				report.append(' ').append(state.getAbbreviation()).append(' ')
+						.append(String.format("%.2f", windows.getMean(w, state))).append(" (")
+						.append(windows.getCount(w, state)).append(')');
+			}
+			if (ranking.isEmpty())
+				report.append(" no tweets");
+			report.append('\n');
+		}
+		out.print(report);
+		out.flush();
+	}
+
+	private static String formatMinutes(int minutes) {
+		if (minutes % 1440 == 0)
+			return minutes / 1440 + "d";
+		if (minutes % 60 == 0)
+			return minutes / 60 + "h";
+		return minutes + "m";
+	}
+}
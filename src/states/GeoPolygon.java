@@ -0,0 +1,203 @@
+package states;
+
+/**
+ * The class {@code GeoPolygon} represents boundary of a state as one or more
+ * rings of geographic coordinates. Rings are combined with even-odd rule, so
+ * they may describe separate parts of a state, like islands, as well as holes
+ * in it. Coordinates are kept in primitive arrays in degrees, without any
+ * rounding, and don't require AWT.
+ * 
+ */
+public class GeoPolygon {
+
+	/** Latitudes of vertices of all rings */
+	final double[] lats;
+
+	/** Longitudes of vertices of all rings */
+	final double[] lngs;
+
+	/**
+	 * Vertices of the ring {@code i} are kept at indexes
+	 * {@code ringStart[i]..ringStart[i+1]}
+	 */
+	final int[] ringStart;
+
+	/** Bounding box of the polygon */
+	private final double minLat, minLng, maxLat, maxLng;
+
+	/**
+	 * Creates polygon from the given rings. Each ring is closed implicitly, so
+	 * its last vertex shouldn't repeat the first one.
+	 * 
+	 * @param ringLats
+	 *            latitudes of vertices of each ring
+	 * @param ringLngs
+	 *            longitudes of vertices of each ring
+	 */
+	public GeoPolygon(double[][] ringLats, double[][] ringLngs) {
+		if (ringLats.length != ringLngs.length)
+			throw new IllegalArgumentException("Number of latitude and longitude rings differs");
+		ringStart = new int[ringLats.length + 1];
+		for (int i = 0; i < ringLats.length; i++) {
+			if (ringLats[i].length != ringLngs[i].length)
+				throw new IllegalArgumentException("Ring " + i + " has different number of coordinates");
+			ringStart[i + 1] = ringStart[i] + ringLats[i].length;
+		}
+		lats = new double[ringStart[ringLats.length]];
+		lngs = new double[lats.length];
+		double minLat = Double.POSITIVE_INFINITY, minLng = Double.POSITIVE_INFINITY;
+		double maxLat = Double.NEGATIVE_INFINITY, maxLng = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < ringLats.length; i++) {
+			System.arraycopy(ringLats[i], 0, lats, ringStart[i], ringLats[i].length);
+			System.arraycopy(ringLngs[i], 0, lngs, ringStart[i], ringLngs[i].length);
+		}
+		for (int i = 0; i < lats.length; i++) {
+			minLat = Math.min(minLat, lats[i]);
+			maxLat = Math.max(maxLat, lats[i]);
+			minLng = Math.min(minLng, lngs[i]);
+			maxLng = Math.max(maxLng, lngs[i]);
+		}
+		this.minLat = minLat;
+		this.minLng = minLng;
+		this.maxLat = maxLat;
+		this.maxLng = maxLng;
+	}
+
+	public int getRingsCount() {
+		return ringStart.length - 1;
+	}
+
+	public int getVerticesCount() {
+		return lats.length;
+	}
+
+	public boolean isEmpty() {
+		return lats.length == 0;
+	}
+
+	public double getMinLat() {
+		return minLat;
+	}
+
+	public double getMinLng() {
+		return minLng;
+	}
+
+	public double getMaxLat() {
+		return maxLat;
+	}
+
+	public double getMaxLng() {
+		return maxLng;
+	}
+
+	/**
+	 * Checks whether the point lies inside the polygon by casting a ray along
+	 * latitude and counting crossed edges of all rings
+	 * 
+	 * @param lat
+	 *            point's latitude
+	 * @param lng
+	 *            point's longitude
+	 * @return true if the point is inside
+	 */
+	public boolean contains(double lat, double lng) {
+		if (lat < minLat || lat > maxLat || lng < minLng || lng > maxLng)
+			return false;
+		boolean inside = false;
+		for (int ring = 0; ring < ringStart.length - 1; ring++) {
+			int end = ringStart[ring + 1];
+			for (int i = ringStart[ring], j = end - 1; i < end; j = i++) {
+				if ((lngs[i] > lng) != (lngs[j] > lng)
+						&& lat < (lats[j] - lats[i]) * (lng - lngs[i]) / (lngs[j] - lngs[i]) + lats[i])
+					inside = !inside;
+			}
+		}
+		return inside;
+	}
+
+	/**
+	 * Checks whether the polygon has common points with the rectangle
+	 * 
+	 * @return true if the polygon and the rectangle intersect
+	 */
+	public boolean intersects(double minLat, double minLng, double maxLat, double maxLng) {
+		if (maxLat < this.minLat || minLat > this.maxLat || maxLng < this.minLng || minLng > this.maxLng)
+			return false;
+		return crosses(minLat, minLng, maxLat, maxLng)
+				|| contains((minLat + maxLat) / 2, (minLng + maxLng) / 2);
+	}
+
+	/**
+	 * Checks whether the rectangle lies entirely inside the polygon
+	 * 
+	 * @return true if the polygon contains the rectangle
+	 */
+	public boolean contains(double minLat, double minLng, double maxLat, double maxLng) {
+		return !crosses(minLat, minLng, maxLat, maxLng)
+				&& contains((minLat + maxLat) / 2, (minLng + maxLng) / 2);
+	}
+
+	/**
+	 * Checks whether some edge of the polygon has common points with the
+	 * closed rectangle
+	 * 
+	 * @return true if the boundary crosses the rectangle
+	 */
+	boolean crosses(double minLat, double minLng, double maxLat, double maxLng) {
+		for (int ring = 0; ring < ringStart.length - 1; ring++) {
+			int end = ringStart[ring + 1];
+			for (int i = ringStart[ring], j = end - 1; i < end; j = i++) {
+				if (segmentIntersectsRectangle(lats[j], lngs[j], lats[i], lngs[i], minLat, minLng, maxLat,
+						maxLng))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether the segment has common points with the closed rectangle
+	 * using Liang-Barsky clipping
+	 * 
+	 * @return true if the segment intersects the rectangle
+	 */
+	static boolean segmentIntersectsRectangle(double x1, double y1, double x2, double y2, double minX,
+			double minY, double maxX, double maxY) {
+		double dx = x2 - x1, dy = y2 - y1;
+		double enter = 0, leave = 1;
+		for (int i = 0; i < 4; i++) {
+			double p, q;
+			switch (i) {
+			case 0:
+				p = -dx;
+				q = x1 - minX;
+				break;
+			case 1:
+				p = dx;
+				q = maxX - x1;
+				break;
+			case 2:
+				p = -dy;
+				q = y1 - minY;
+				break;
+			default:
+				p = dy;
+				q = maxY - y1;
+			}
+			if (p == 0) {
+				if (q < 0)
+					return false;
+			} else {
+				double t = q / p;
+				if (p < 0)
+					enter = Math.max(enter, t);
+				else
+					leave = Math.min(leave, t);
+				if (enter > leave)
+					return false;
+			}
+		}
+		return true;
+	}
+}
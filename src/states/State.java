@@ -1,6 +1,5 @@
 package states;
 
-import java.awt.Polygon;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.HashMap;
@@ -26,7 +25,7 @@ public enum State {
 	Alaska, Alabama, Arkansas, Arizona, California, Colorado, Connecticut, Delaware, Florida, Georgia, Hawaii, Iowa, Idaho, Illinois, Indiana, Kansas, Kentucky, Louisiana, Massachusetts, Maryland, Maine, Michigan, Minnesota, Missouri, Mississippi, Montana, NorthCarolina, NorthDakota, Nebraska, NewHampshire, NewJersey, NewMexico, Nevada, NewYork, Ohio, Oklahoma, Oregon, Pennsylvania, RhodeIsland, SouthCarolina, SouthDakota, Tennessee, Texas, Utah, Virginia, Vermont, Washington, Wisconsin, WestVirginia, Wyoming, Undefined;
 
 	/** Boundary of the state */
-	private Polygon boundary;
+	private GeoPolygon boundary;
 	
 	/** Abbreviation of the state */
 	private String abbreviation;
@@ -34,10 +33,20 @@ public enum State {
 	/**Mapping from abbreviation to state*/
 	private static Map<String, State> abbreviationToState;
 	
-	/**Scaling factor for boundary coordinates*/
-	private final static int coordinatesScaleFactor = 10000;
+	/**Side of the spatial index cell in degrees*/
+	private final static double indexCellSize = 0.25;
 
-	public Polygon getBoundary() {
+	/**File with state boundaries*/
+	final static String boundariesFile = "states.xml";
+
+	/**All states indexed by ordinal*/
+	private final static State[] states = values();
+
+	/**Precomputed raster of state boundaries, if lookups should use it*/
+	private static volatile StateRaster raster;
+
+	public GeoPolygon getBoundary() {
+		Boundaries.load();
 		return boundary;
 	}
 
@@ -52,8 +61,36 @@ public enum State {
 	 * @return state of the  given point
 	 */
 	public static State getStateOfGeoLocation(double lat, double lng) {
-		lat *= coordinatesScaleFactor;
-		lng *= coordinatesScaleFactor;
+		StateRaster raster = State.raster;
+		if (raster != null) {
+			int ordinal = raster.find(lat, lng);
+			if (ordinal != StateRaster.MIXED)
+				return states[ordinal];
+		}
+		return getStateOfGeoLocationByIndex(lat, lng);
+	}
+
+	/**
+	 * Determines the state to which the point belongs testing only the
+	 * boundaries, which are near the point according to spatial index
+	 * @param lat point's latitude
+	 * @param lng point's longitude
+	 * @return state of the  given point
+	 */
+	static State getStateOfGeoLocationByIndex(double lat, double lng) {
+		return Boundaries.index.find(lat, lng);
+	}
+
+	/**
+	 * Determines the state to which the point belongs by testing boundaries
+	 * of all states one by one. It is a reference implementation for
+	 * {@link #getStateOfGeoLocation(double, double)}, which uses spatial index.
+	 * @param lat point's latitude
+	 * @param lng point's longitude
+	 * @return state of the  given point
+	 */
+	public static State getStateOfGeoLocationByScan(double lat, double lng) {
+		Boundaries.load();
 		for (State state : State.values()) {
 			if (state.boundary.contains(lat, lng))
 				return state;
@@ -70,18 +107,54 @@ public enum State {
 		return abbreviationToState.get(abbreviation);
 	}
 
+	/**
+	 * Makes {@link #getStateOfGeoLocation(double, double)} answer from the
+	 * given raster and test polygons only for the cells on state borders.
+	 * @param raster raster of state boundaries or {@code null} to always test
+	 * polygons
+	 */
+	public static void setRaster(StateRaster raster) {
+		State.raster = raster;
+	}
+
 	static {
 		try {
-			initializeStateCoordinates();
 			initailizeStateAbbreviation();
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
 
+	/**
+	 * Holder of state boundaries and their spatial index. Boundaries are read
+	 * on the first use instead of on initialization of the enum, so that the
+	 * lookups answered from a cached raster don't need to parse XML at all.
+	 */
+	private static class Boundaries {
+		/**Spatial index over state boundaries*/
+		private static StateIndex index;
+
+		static {
+			try {
+				initializeStateCoordinates();
+				index = new StateIndex(indexCellSize);
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+
+		/**
+		 * Makes sure that boundaries are loaded
+		 */
+		static void load() {
+		}
+	}
+
 	/**
 	 * Reads file with state boundaries and builds corresponding polygon
-	 * for each state.
+	 * for each state. Points of a state may be grouped into several
+	 * {@code <polygon>} elements for states consisting of several parts,
+	 * otherwise all points of the state form one ring.
 	 * 
 	 * @throws Exception if XML parser doesn't work
 	 */
@@ -90,7 +163,7 @@ public enum State {
 		DocumentBuilder builder;
 
 		builder = factory.newDocumentBuilder();
-		File input = new File("states.xml");
+		File input = new File(boundariesFile);
 		Document doc = builder.parse(input);
 		NodeList nodeStates = doc.getElementsByTagName("state");
 		for (int i = 0; i < nodeStates.getLength(); i++) {
@@ -98,19 +171,28 @@ public enum State {
 			String name = nodeState.getAttributes().getNamedItem("name").getNodeValue()
 					.replace(" ", "");
 			State state = State.valueOf(name);
-			Polygon boundary = new Polygon();
-			NodeList points = ((Element) nodeState).getElementsByTagName("point");
-			for (int j = 0; j < points.getLength(); j++) {
-				Node point = points.item(j);
-				int lat = (int) (coordinatesScaleFactor * Double.parseDouble(point.getAttributes()
-						.getNamedItem("lat").getNodeValue()));
-				int lng = (int) (coordinatesScaleFactor * Double.parseDouble(point.getAttributes()
-						.getNamedItem("lng").getNodeValue()));
-				boundary.addPoint(lat, lng);
+			NodeList polygons = ((Element) nodeState).getElementsByTagName("polygon");
+			Element[] rings = new Element[Math.max(1, polygons.getLength())];
+			rings[0] = (Element) nodeState;
+			for (int r = 0; r < polygons.getLength(); r++) {
+				rings[r] = (Element) polygons.item(r);
+			}
+			double[][] lats = new double[rings.length][];
+			double[][] lngs = new double[rings.length][];
+			for (int r = 0; r < rings.length; r++) {
+				Element ring = rings[r];
+				NodeList points = ring.getElementsByTagName("point");
+				lats[r] = new double[points.getLength()];
+				lngs[r] = new double[points.getLength()];
+				for (int j = 0; j < points.getLength(); j++) {
+					Node point = points.item(j);
+					lats[r][j] = Double.parseDouble(point.getAttributes().getNamedItem("lat").getNodeValue());
+					lngs[r][j] = Double.parseDouble(point.getAttributes().getNamedItem("lng").getNodeValue());
+				}
 			}
-			state.boundary = boundary;
+			state.boundary = new GeoPolygon(lats, lngs);
 		}
-		State.Undefined.boundary = new Polygon(new int[] { 0 }, new int[] { 0 }, 1);
+		State.Undefined.boundary = new GeoPolygon(new double[0][], new double[0][]);
 	}
 
 	/**
@@ -0,0 +1,125 @@
+package states;
+
+/**
+ * The class {@code StateIndex} is a uniform grid over state boundaries, which
+ * speeds up point-in-polygon lookups. Each cell of the grid keeps the states
+ * whose boundary intersects it, ordered as in {@link State#values()}, so a
+ * lookup tests at most a couple of polygons and returns the same state as the
+ * linear scan over all states. Cells lying entirely inside one state and
+ * touching no other return that state without any polygon test.
+ * 
+ */
+class StateIndex {
+
+	/** Marks cell which requires testing its candidate polygons */
+	private static final byte MIXED = -1;
+
+	/** Side of the grid cell in degrees */
+	private final double cellSize;
+
+	/** Latitude and longitude of the lower corner of the grid */
+	private final double minLat, minLng;
+
+	/** Number of grid cells along latitude and longitude */
+	private final int rows, columns;
+
+	/** Ordinal of the state covering the whole cell or {@link #MIXED} */
+	private final byte[] cellStates;
+
+	/**
+	 * Candidates of the cell {@code i} are kept in
+	 * {@code candidates[cellStart[i]..cellStart[i+1])}
+	 */
+	private final int[] cellStart;
+
+	/** Ordinals of the candidate states of all cells */
+	private final byte[] candidates;
+
+	/** States indexed by ordinal */
+	private final State[] states;
+
+	/**
+	 * Builds grid over boundaries of all states except {@link State#Undefined}
+	 * 
+	 * @param cellSize
+	 *            side of the grid cell in degrees
+	 */
+	StateIndex(double cellSize) {
+		this.cellSize = cellSize;
+		states = State.values();
+		double minLat = Double.POSITIVE_INFINITY, minLng = Double.POSITIVE_INFINITY;
+		double maxLat = Double.NEGATIVE_INFINITY, maxLng = Double.NEGATIVE_INFINITY;
+		for (State state : states) {
+			GeoPolygon boundary = state.getBoundary();
+			if (boundary.isEmpty())
+				continue;
+			minLat = Math.min(minLat, boundary.getMinLat());
+			minLng = Math.min(minLng, boundary.getMinLng());
+			maxLat = Math.max(maxLat, boundary.getMaxLat());
+			maxLng = Math.max(maxLng, boundary.getMaxLng());
+		}
+		this.minLat = Math.floor(minLat);
+		this.minLng = Math.floor(minLng);
+		rows = (int) ((maxLat - this.minLat) / cellSize) + 1;
+		columns = (int) ((maxLng - this.minLng) / cellSize) + 1;
+
+		cellStates = new byte[rows * columns];
+		cellStart = new int[rows * columns + 1];
+		byte[] buffer = new byte[64];
+		int count = 0;
+		byte[] cellCandidates = new byte[states.length];
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				int cell = row * columns + column;
+				double bottom = this.minLat + row * cellSize, top = bottom + cellSize;
+				double left = this.minLng + column * cellSize, right = left + cellSize;
+				int n = 0;
+				for (State state : states) {
+					if (state.getBoundary().intersects(bottom, left, top, right))
+						cellCandidates[n++] = (byte) state.ordinal();
+				}
+				cellStates[cell] = MIXED;
+				if (n == 0) {
+					cellStates[cell] = (byte) State.Undefined.ordinal();
+				} else if (n == 1 && states[cellCandidates[0]].getBoundary().contains(bottom, left, top, right)) {
+					cellStates[cell] = cellCandidates[0];
+				}
+				if (count + n > buffer.length) {
+					byte[] grown = new byte[Math.max(buffer.length * 2, count + n)];
+					System.arraycopy(buffer, 0, grown, 0, count);
+					buffer = grown;
+				}
+				System.arraycopy(cellCandidates, 0, buffer, count, n);
+				count += n;
+				cellStart[cell + 1] = count;
+			}
+		}
+		candidates = new byte[count];
+		System.arraycopy(buffer, 0, candidates, 0, count);
+	}
+
+	/**
+	 * Finds the state containing the point
+	 * 
+	 * @param lat
+	 *            point's latitude
+	 * @param lng
+	 *            point's longitude
+	 * @return state of the given point
+	 */
+	State find(double lat, double lng) {
+		double row = Math.floor((lat - minLat) / cellSize);
+		double column = Math.floor((lng - minLng) / cellSize);
+		if (row < 0 || row >= rows || column < 0 || column >= columns)
+			return State.Undefined;
+		int cell = (int) row * columns + (int) column;
+		if (cellStates[cell] != MIXED)
+			return states[cellStates[cell]];
+		for (int i = cellStart[cell]; i < cellStart[cell + 1]; i++) {
+			State state = states[candidates[i]];
+			if (state.getBoundary().contains(lat, lng))
+				return state;
+		}
+		return State.Undefined;
+	}
+}
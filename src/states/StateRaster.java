@@ -0,0 +1,257 @@
+package states;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The class {@code StateRaster} is a grid of bytes over state boundaries,
+ * which keeps for each cell the ordinal of the state covering the whole cell.
+ * Cells crossed by some boundary are marked as {@link #MIXED}, and the points
+ * falling into them have to be tested against polygons. With a fine enough
+ * grid most lookups are a single array read.
+ * <p>
+ * The raster may be saved to a file, which is memory-mapped on the next start,
+ * so that neither {@code states.xml} has to be parsed nor the raster rebuilt.
+ * The file is rebuilt whenever {@code states.xml} changes.
+ * 
+ */
+public class StateRaster {
+
+	/** Marks cell which is crossed by some state boundary */
+	public static final int MIXED = -1;
+
+	/** Magic number of the raster file */
+	private static final int MAGIC = 0x53524153;
+
+	/** Version of the raster file format */
+	private static final int VERSION = 2;
+
+	/** Size of the raster file header in bytes */
+	private static final int HEADER_SIZE = 52;
+
+	/** Tolerance used when deciding whether a boundary touches a cell */
+	private static final double EPSILON = 1e-9;
+
+	/** Number of cells per degree of latitude and longitude */
+	private final int cellsPerDegree;
+
+	/** Latitude and longitude of the lower corner of the grid */
+	private final double minLat, minLng;
+
+	/** Number of cells along latitude and longitude */
+	private final int rows, columns;
+
+	/** Cells stored row by row, starting at {@link #cellsOffset} */
+	private final ByteBuffer cells;
+
+	/** Position of the first cell in {@link #cells} */
+	private final int cellsOffset;
+
+	private StateRaster(int cellsPerDegree, double minLat, double minLng, int rows, int columns,
+			ByteBuffer cells, int cellsOffset) {
+		this.cellsPerDegree = cellsPerDegree;
+		this.minLat = minLat;
+		this.minLng = minLng;
+		this.rows = rows;
+		this.columns = columns;
+		this.cells = cells;
+		this.cellsOffset = cellsOffset;
+	}
+
+	public int getCellsPerDegree() {
+		return cellsPerDegree;
+	}
+
+	/**
+	 * Returns ordinal of the state covering the cell of the given point
+	 * 
+	 * @param lat
+	 *            point's latitude
+	 * @param lng
+	 *            point's longitude
+	 * @return ordinal of the state or {@link #MIXED} if the point has to be
+	 *         tested against polygons
+	 */
+	public int find(double lat, double lng) {
+		double row = Math.floor((lat - minLat) * cellsPerDegree);
+		double column = Math.floor((lng - minLng) * cellsPerDegree);
+		if (row < 0 || row >= rows || column < 0 || column >= columns)
+			return State.Undefined.ordinal();
+		return cells.get(cellsOffset + (int) row * columns + (int) column);
+	}
+
+	/**
+	 * Returns the raster cached in the given file. If the file doesn't exist,
+	 * was built with other resolution or is older than state boundaries, the
+	 * raster is rebuilt and saved to this file.
+	 * 
+	 * @param cacheFile
+	 *            file with cached raster
+	 * @param cellsPerDegree
+	 *            number of cells per degree of latitude and longitude
+	 * @return memory-mapped raster
+	 * @throws IOException
+	 *             if the file can't be read or written
+	 */
+	public static StateRaster load(File cacheFile, int cellsPerDegree) throws IOException {
+		StateRaster raster = map(cacheFile);
+		if (raster == null || raster.cellsPerDegree != cellsPerDegree) {
+			build(cellsPerDegree).save(cacheFile);
+			raster = map(cacheFile);
+		}
+		return raster;
+	}
+
+	/**
+	 * Rasterizes state boundaries
+	 * 
+	 * @param cellsPerDegree
+	 *            number of cells per degree of latitude and longitude
+	 * @return raster kept in memory
+	 */
+	public static StateRaster build(int cellsPerDegree) {
+		if (cellsPerDegree < 1)
+			throw new IllegalArgumentException("Resolution must be positive: " + cellsPerDegree);
+		double minLat = Double.POSITIVE_INFINITY, minLng = Double.POSITIVE_INFINITY;
+		double maxLat = Double.NEGATIVE_INFINITY, maxLng = Double.NEGATIVE_INFINITY;
+		for (State state : State.values()) {
+			GeoPolygon boundary = state.getBoundary();
+			if (boundary.isEmpty())
+				continue;
+			minLat = Math.min(minLat, boundary.getMinLat());
+			minLng = Math.min(minLng, boundary.getMinLng());
+			maxLat = Math.max(maxLat, boundary.getMaxLat());
+			maxLng = Math.max(maxLng, boundary.getMaxLng());
+		}
+		minLat = Math.floor(minLat);
+		minLng = Math.floor(minLng);
+		int rows = (int) Math.ceil((maxLat - minLat) * cellsPerDegree) + 1;
+		int columns = (int) Math.ceil((maxLng - minLng) * cellsPerDegree) + 1;
+		if ((long) rows * columns > Integer.MAX_VALUE - HEADER_SIZE)
+			throw new IllegalArgumentException("Resolution is too high: " + cellsPerDegree);
+
+		// cells crossed by some boundary edge are mixed, the rest take the
+		// state of their center
+		byte[] cells = new byte[rows * columns];
+		for (State state : State.values()) {
+			GeoPolygon boundary = state.getBoundary();
+			for (int ring = 0; ring < boundary.getRingsCount(); ring++) {
+				int start = boundary.ringStart[ring], end = boundary.ringStart[ring + 1];
+				for (int i = start, j = end - 1; i < end; j = i++) {
+					markEdge(cells, columns, minLat, minLng, 1.0 / cellsPerDegree, boundary.lats[j],
+							boundary.lngs[j], boundary.lats[i], boundary.lngs[i]);
+				}
+			}
+		}
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				int cell = row * columns + column;
+				if (cells[cell] == MIXED)
+					continue;
+				double lat = minLat + (row + 0.5) / cellsPerDegree;
+				double lng = minLng + (column + 0.5) / cellsPerDegree;
+				cells[cell] = (byte) State.getStateOfGeoLocationByIndex(lat, lng).ordinal();
+			}
+		}
+		return new StateRaster(cellsPerDegree, minLat, minLng, rows, columns, ByteBuffer.wrap(cells), 0);
+	}
+
+	/**
+	 * Saves the raster to file, which can be memory-mapped later
+	 * 
+	 * @param file
+	 *            destination file
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public void save(File file) throws IOException {
+		File boundaries = new File(State.boundariesFile);
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(boundaries.length());
+			out.writeLong(boundaries.lastModified());
+			out.writeInt(cellsPerDegree);
+			out.writeInt(rows);
+			out.writeInt(columns);
+			out.writeDouble(minLat);
+			out.writeDouble(minLng);
+			for (int i = 0; i < rows * columns; i++) {
+				out.writeByte(cells.get(cellsOffset + i));
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/**
+	 * Memory-maps raster file
+	 * 
+	 * @param file
+	 *            raster file
+	 * @return raster or {@code null} if the file doesn't exist or is outdated
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static StateRaster map(File file) throws IOException {
+		if (!file.isFile() || file.length() < HEADER_SIZE)
+			return null;
+		File boundaries = new File(State.boundariesFile);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+					|| buffer.getLong(8) != boundaries.length()
+					|| buffer.getLong(16) != boundaries.lastModified())
+				return null;
+			int cellsPerDegree = buffer.getInt(24);
+			int rows = buffer.getInt(28);
+			int columns = buffer.getInt(32);
+			double minLat = buffer.getDouble(36);
+			double minLng = buffer.getDouble(44);
+			if (channel.size() != HEADER_SIZE + (long) rows * columns)
+				return null;
+			return new StateRaster(cellsPerDegree, minLat, minLng, rows, columns, buffer, HEADER_SIZE);
+		} finally {
+			// the mapping stays valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Marks the cells crossed by the edge as mixed
+	 */
+	private static void markEdge(byte[] cells, int columns, double minLat, double minLng,
+			double cellSize, double lat1, double lng1, double lat2, double lng2) {
+		int rows = cells.length / columns;
+		int firstRow = Math.max(0, (int) Math.floor((Math.min(lat1, lat2) - minLat - EPSILON) / cellSize));
+		int lastRow = Math.min(rows - 1, (int) Math.floor((Math.max(lat1, lat2) - minLat + EPSILON) / cellSize));
+		int firstColumn = Math.max(0, (int) Math.floor((Math.min(lng1, lng2) - minLng - EPSILON) / cellSize));
+		int lastColumn = Math.min(columns - 1,
+				(int) Math.floor((Math.max(lng1, lng2) - minLng + EPSILON) / cellSize));
+		for (int row = firstRow; row <= lastRow; row++) {
+			double bottom = minLat + row * cellSize - EPSILON;
+			double top = minLat + (row + 1) * cellSize + EPSILON;
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				double left = minLng + column * cellSize - EPSILON;
+				double right = minLng + (column + 1) * cellSize + EPSILON;
+				if (GeoPolygon.segmentIntersectsRectangle(lat1, lng1, lat2, lng2, bottom, left, top, right))
+					cells[row * columns + column] = MIXED;
+			}
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package tweets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The class {@code AsyncInputStream} reads another stream on a background
+ * thread, so that decompression runs in parallel with parsing. Chunks of the
+ * source are passed through a bounded queue, which stops the background
+ * thread when the reader falls behind.
+ * 
+ */
+public class AsyncInputStream extends InputStream {
+
+	/** Size of chunks read from the source */
+	private static final int CHUNK_SIZE = 1 << 18;
+
+	/** Number of chunks which may wait in the queue */
+	private static final int QUEUED_CHUNKS = 16;
+
+	/** Marker of the end of the source */
+	private static final byte[] END_OF_STREAM = new byte[0];
+
+	/** Source stream */
+	private final InputStream source;
+
+	/** Chunks read from the source */
+	private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(QUEUED_CHUNKS);
+
+	/** Background thread reading the source */
+	private final Thread producer;
+
+	/** Error which stopped reading of the source, if any */
+	private volatile IOException failure;
+
+	/** Chunk being read and position in it */
+	private byte[] chunk;
+	private int position;
+
+	/** Whether the stream was closed */
+	private volatile boolean closed;
+
+	/**
+	 * Starts reading of the source on a background thread
+	 * 
+	 * @param source
+	 *            stream to be read
+	 * @param name
+	 *            name of the background thread
+	 */
+	public AsyncInputStream(InputStream source, String name) {
+		this.source = source;
+		producer = new Thread(name) {
+			@Override
+			public void run() {
+				produce();
+			}
+		};
+		producer.setDaemon(true);
+		producer.start();
+	}
+
+	private void produce() {
+		try {
+			try {
+				while (!closed) {
+					byte[] buffer = new byte[CHUNK_SIZE];
+					int length = 0;
+					int n;
+					while (length < CHUNK_SIZE && (n = source.read(buffer, length, CHUNK_SIZE - length)) != -1) {
+						length += n;
+					}
+					if (length == 0)
+						break;
+					if (length < CHUNK_SIZE) {
+						byte[] last = new byte[length];
+						System.arraycopy(buffer, 0, last, 0, length);
+						buffer = last;
+					}
+					chunks.put(buffer);
+				}
+			} catch (IOException e) {
+				failure = e;
+			} catch (RuntimeException e) {
+				failure = new IOException(e);
+			} finally {
+				try {
+					source.close();
+				} catch (IOException e) {
+					if (failure == null)
+						failure = e;
+				}
+			}
+			chunks.put(END_OF_STREAM);
+		} catch (InterruptedException e) {
+			// the reader closed the stream
+		}
+	}
+
+	/**
+	 * Takes the next chunk from the queue if the current one is exhausted
+	 * 
+	 * @return false at the end of the stream
+	 */
+	private boolean nextChunk() throws IOException {
+		if (chunk == END_OF_STREAM)
+			return false;
+		if (chunk != null && position < chunk.length)
+			return true;
+		if (closed)
+			throw new IOException("Stream closed");
+		try {
+			chunk = chunks.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for data", e);
+		}
+		position = 0;
+		if (chunk == END_OF_STREAM) {
+			if (failure != null)
+				throw failure;
+			return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextChunk())
+			return -1;
+		return chunk[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (!nextChunk())
+			return -1;
+		int n = Math.min(len, chunk.length - position);
+		System.arraycopy(chunk, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		producer.interrupt();
+	}
+}
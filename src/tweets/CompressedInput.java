@@ -0,0 +1,204 @@
+package tweets;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The class {@code CompressedInput} opens twitter stream files, which may be
+ * compressed with gzip, zstd or bzip2. The format is recognized by the magic
+ * number of the file, not by its name. Gzip files are decompressed by the
+ * JDK, multi-member ones on as many threads as the caller allows, each of
+ * which holds at most {@value #PENDING_BYTES_PER_THREAD} decompressed bytes in
+ * memory. The JDK has no zstd and bzip2
+ * decoders, so such files are decompressed by the {@code zstd} and
+ * {@code bzip2} tools, which must be on the path. In every case the
+ * decompression runs on its own thread.
+ * 
+ */
+public class CompressedInput {
+
+	/** Compression formats */
+	public enum Format {
+		NONE, GZIP, ZSTD, BZIP2
+	}
+
+	/** Decompressed bytes, which a gzip decompressing thread may hold */
+	private static final int PENDING_BYTES_PER_THREAD = 16 << 20;
+
+	private CompressedInput() {
+	}
+
+	/**
+	 * Recognizes compression format of the file by its magic number
+	 * 
+	 * @param file
+	 *            file to be checked
+	 * @return compression format
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static Format detect(File file) throws IOException {
+		byte[] magic = new byte[4];
+		int length = 0;
+		InputStream in = new FileInputStream(file);
+		try {
+			int n;
+			while (length < magic.length && (n = in.read(magic, length, magic.length - length)) != -1) {
+				length += n;
+			}
+		} finally {
+			in.close();
+		}
+		if (length >= 2 && magic[0] == (byte) 0x1f && magic[1] == (byte) 0x8b)
+			return Format.GZIP;
+		if (length == 4 && magic[0] == (byte) 0x28 && magic[1] == (byte) 0xb5 && magic[2] == (byte) 0x2f
+				&& magic[3] == (byte) 0xfd)
+			return Format.ZSTD;
+		if (length >= 3 && magic[0] == 'B' && magic[1] == 'Z' && magic[2] == 'h')
+			return Format.BZIP2;
+		return Format.NONE;
+	}
+
+	/**
+	 * Opens reader of the twitter stream file: plain files are memory-mapped,
+	 * compressed ones are decompressed on the fly by one thread
+	 * 
+	 * @param file
+	 *            file with Twitter's data
+	 * @return reader of the stream lines
+	 * @throws IOException
+	 *             if the file can't be opened
+	 */
+	public static LineReader openReader(File file) throws IOException {
+		return openReader(file, 1);
+	}
+
+	/**
+	 * Opens reader of the twitter stream file: plain files are memory-mapped,
+	 * compressed ones are decompressed on the fly
+	 * 
+	 * @param file
+	 *            file with Twitter's data
+	 * @param threadsCount
+	 *            largest number of threads decompressing a gzip file
+	 * @return reader of the stream lines
+	 * @throws IOException
+	 *             if the file can't be opened
+	 */
+	public static LineReader openReader(File file, int threadsCount) throws IOException {
+		if (detect(file) == Format.NONE)
+			return new MappedLineReader(file);
+		return new StreamLineReader(open(file, threadsCount));
+	}
+
+	/**
+	 * Opens decompressed contents of the file, which is decompressed by one
+	 * thread
+	 * 
+	 * @param file
+	 *            file with Twitter's data
+	 * @return stream of decompressed bytes
+	 * @throws IOException
+	 *             if the file can't be opened
+	 */
+	public static InputStream open(File file) throws IOException {
+		return open(file, 1);
+	}
+
+	/**
+	 * Opens decompressed contents of the file
+	 * 
+	 * @param file
+	 *            file with Twitter's data
+	 * @param threadsCount
+	 *            largest number of threads decompressing a gzip file
+	 * @return stream of decompressed bytes
+	 * @throws IOException
+	 *             if the file can't be opened
+	 */
+	public static InputStream open(File file, int threadsCount) throws IOException {
+		InputStream in;
+		switch (detect(file)) {
+		case GZIP:
+			if (threadsCount > 1)
+				in = new ParallelGzipInputStream(file, threadsCount, (long) threadsCount
+						* PENDING_BYTES_PER_THREAD);
+			else
+				in = new GZIPInputStream(new FileInputStream(file), 1 << 16);
+			break;
+		case ZSTD:
+			in = new ProcessInputStream("zstd", "-dcq", file.getPath());
+			break;
+		case BZIP2:
+			in = new ProcessInputStream("bzip2", "-dcq", file.getPath());
+			break;
+		default:
+			return new BufferedInputStream(new FileInputStream(file), 1 << 16);
+		}
+		return new AsyncInputStream(in, "decompressor-" + file.getName());
+	}
+
+	/**
+	 * Output of an external decompressor
+	 */
+	private static class ProcessInputStream extends InputStream {
+		/** Decompressing process */
+		private final Process process;
+
+		/** Output of the process */
+		private final InputStream out;
+
+		/** Command line for error messages */
+		private final String command;
+
+		ProcessInputStream(String... command) throws IOException {
+			this.command = command[0];
+			ProcessBuilder builder = new ProcessBuilder(command);
+			builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+			try {
+				process = builder.start();
+			} catch (IOException e) {
+				throw new IOException("Can't start " + command[0] + ", is it installed?", e);
+			}
+			out = process.getInputStream();
+			process.getOutputStream().close();
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = out.read();
+			if (b == -1)
+				checkExitCode();
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = out.read(b, off, len);
+			if (n == -1)
+				checkExitCode();
+			return n;
+		}
+
+		private void checkExitCode() throws IOException {
+			try {
+				int exitCode = process.waitFor();
+				if (exitCode != 0)
+					throw new IOException(command + " failed with exit code " + exitCode);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for " + command, e);
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+			process.destroy();
+		}
+	}
+}
@@ -0,0 +1,362 @@
+package tweets;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The class {@code DuplicateFilter} recognizes retweets and tweets repeating
+ * a text seen shortly before, so that they can be dropped before language
+ * detection and scoring.
+ * <p>
+ * Texts are normalized first: leading {@code RT} markers and mentions, links,
+ * punctuation and case are ignored, so a retweet has the same text as the
+ * original tweet. A 64-bit hash of the normalized text is kept in a Bloom
+ * filter. Near duplicates, such as copies with a word added, are recognized
+ * optionally with MinHash signatures over pairs of adjacent words of texts
+ * with at least {@value #MIN_NEAR_WORDS} words, whose bands are kept in the
+ * same filter: texts sharing one of {@value #BANDS} bands of {@value #ROWS}
+ * minimal hashes are duplicates. A band is used only if its minimal hashes come
+ * from {@value #ROWS} different word pairs, so texts sharing just a few common
+ * pairs, such as "i love" or "of the", aren't duplicates. A text with a word
+ * added to 10 words is recognized in about 95% of cases, and about 0.01% of
+ * unrelated texts are taken for near duplicates, see
+ * {@code bench.DuplicateFilterCheck}.
+ * Hashes may be salted with the user id, then only repetitions of the same
+ * user are duplicates.
+ * <p>
+ * Memory is fixed: it is divided between {@value #GENERATIONS} Bloom filters,
+ * new hashes are put into the newest one, and the oldest one is cleared and
+ * becomes the newest every {@code horizon / (GENERATIONS - 1)} milliseconds of
+ * tweet time. So texts are remembered for at least the horizon, unless the
+ * newest filter gets full earlier, which shortens the horizon but keeps the
+ * rate of false duplicates below 0.01% for each hash looked up. A filter is
+ * full when it holds as many tweets as could put {@value #BITS_PER_HASH} bits
+ * per hash, counting all bands of near duplicates. Tweet time is taken from
+ * the {@code timestamp_ms} field. A tweet without timestamp belongs to the
+ * newest filter, the clock is used only if no filter has been started yet.
+ * <p>
+ * The filter is thread-safe and doesn't lock, except when filters are
+ * rotated. Two copies of a text checked concurrently may both pass.
+ * 
+ */
+public class DuplicateFilter {
+
+	/** Tweets, among which duplicates are searched */
+	public enum Scope {
+		/** All tweets */
+		GLOBAL,
+		/** Tweets of the same user */
+		USER
+	}
+
+	/** Number of Bloom filters */
+	private static final int GENERATIONS = 4;
+
+	/** Number of bits set for each hash */
+	private static final int PROBES = 10;
+
+	/** Bits per hash, which give about 0.002% of false positives of a full filter */
+	private static final int BITS_PER_HASH = 24;
+
+	/** Number of bands of MinHash signatures */
+	private static final int BANDS = 8;
+
+	/** Number of minimal hashes in a band */
+	private static final int ROWS = 4;
+
+	/** Minimal number of words of texts compared as near duplicates */
+	private static final int MIN_NEAR_WORDS = 9;
+
+	/** Seeds of hash functions of MinHash signatures */
+	private static final long[] SEEDS = new long[BANDS * ROWS];
+
+	static {
+		long seed = 0x2545F4914F6CDD1DL;
+		for (int i = 0; i < SEEDS.length; i++) {
+			seed += 0x9E3779B97F4A7C15L;
+			SEEDS[i] = mix(seed);
+		}
+	}
+
+	/** Word hashes and signature of the current thread */
+	private static final ThreadLocal<Buffers> buffers = new ThreadLocal<Buffers>() {
+		@Override
+		protected Buffers initialValue() {
+			return new Buffers();
+		}
+	};
+
+	/** Tweets, among which duplicates are searched */
+	private final Scope scope;
+
+	/** Indicates whether near duplicates are searched */
+	private final boolean near;
+
+	/** Tweet time covered by one filter in milliseconds */
+	private final long generationMillis;
+
+	/** Number of bits of a filter minus one */
+	private final long mask;
+
+	/** Number of tweets a filter holds before it is rotated */
+	private final long capacity;
+
+	/** Filters, the newest first */
+	private volatile AtomicLongArray[] generations;
+
+	/** Tweet time, at which the filters are rotated */
+	private volatile long generationEnd = Long.MIN_VALUE;
+
+	/** Number of tweets put into the newest filter */
+	private final AtomicLong tweets = new AtomicLong();
+
+	/**
+	 * Buffers reused by a thread
+	 */
+	private static class Buffers {
+		/** Hashes of words of the text */
+		long[] words = new long[64];
+
+		/** Minimal hashes of the signature */
+		final long[] minima = new long[BANDS * ROWS];
+
+		/** Indices of word pairs, which gave the minimal hashes */
+		final int[] pairs = new int[BANDS * ROWS];
+	}
+
+	/**
+	 * Creates filter
+	 * 
+	 * @param scope
+	 *            tweets, among which duplicates are searched
+	 * @param horizonMillis
+	 *            time for which texts are remembered in milliseconds
+	 * @param memoryBytes
+	 *            memory of all the filters in bytes
+	 * @param near
+	 *            true to search near duplicates as well as exact ones
+	 */
+	public DuplicateFilter(Scope scope, long horizonMillis, long memoryBytes, boolean near) {
+		if (horizonMillis <= 0)
+			throw new IllegalArgumentException("Horizon must be positive: " + horizonMillis);
+		this.scope = scope;
+		this.near = near;
+		generationMillis = Math.max(1, horizonMillis / (GENERATIONS - 1));
+		long bits = Long.highestOneBit(Math.max(64, memoryBytes * 8 / GENERATIONS));
+		bits = Math.min(bits, 1L << 36);
+		mask = bits - 1;
+		capacity = bits / BITS_PER_HASH / (near ? 1 + BANDS : 1);
+		generations = new AtomicLongArray[GENERATIONS];
+		for (int i = 0; i < GENERATIONS; i++) {
+			generations[i] = new AtomicLongArray((int) (bits >>> 6));
+		}
+	}
+
+	/**
+	 * Checks whether the text of the tweet was seen within the horizon and
+	 * remembers it
+	 * 
+	 * @param tweet
+	 *            tweet with text
+	 * @return true if the tweet is a duplicate
+	 */
+	public boolean isDuplicate(RawTweet tweet) {
+		String text = tweet.getText();
+		if (text == null)
+			return false;
+		Buffers b = buffers.get();
+		int count = hashWords(text, b);
+		if (count == 0)
+			return false;
+		long salt = 0;
+		if (scope == Scope.USER && tweet.getUser() != null && tweet.getUser().getId() != null)
+			salt = hashWord(tweet.getUser().getId(), 0, tweet.getUser().getId().length());
+		long time = tweet.getTimestampMillis();
+		if (time == 0) {
+			long end = generationEnd;
+			time = end != Long.MIN_VALUE ? end - generationMillis : System.currentTimeMillis();
+		}
+		AtomicLongArray[] filters = advance(time);
+		tweets.incrementAndGet();
+		long textHash = salt;
+		for (int i = 0; i < count; i++) {
+			textHash = mix(textHash ^ b.words[i]);
+		}
+		boolean duplicate = put(filters, textHash);
+		if (near && count >= MIN_NEAR_WORDS) {
+			long[] minima = b.minima;
+			int[] pairs = b.pairs;
+			Arrays.fill(minima, Long.MAX_VALUE);
+			for (int i = 0; i + 1 < count; i++) {
+				long shingle = b.words[i] ^ Long.rotateLeft(b.words[i + 1], 21);
+				for (int j = 0; j < minima.length; j++) {
+					long hash = mix(shingle ^ SEEDS[j]);
+					if (hash < minima[j]) {
+						minima[j] = hash;
+						pairs[j] = i;
+					}
+				}
+			}
+			for (int band = 0; band < BANDS; band++) {
+				// a band whose minima come from one or two pairs would match
+				// every text sharing just these common pairs
+				if (!hasDistinctPairs(pairs, band * ROWS))
+					continue;
+				long bandHash = SEEDS[band] ^ salt;
+				for (int row = 0; row < ROWS; row++) {
+					bandHash = mix(bandHash ^ minima[band * ROWS + row]);
+				}
+				// every band is put, even if the text is already known
+				duplicate |= put(filters, bandHash);
+			}
+		}
+		return duplicate;
+	}
+
+	/**
+	 * Checks whether the minima of the band come from different word pairs
+	 */
+	private static boolean hasDistinctPairs(int[] pairs, int start) {
+		for (int i = start; i < start + ROWS; i++) {
+			for (int j = start; j < i; j++) {
+				if (pairs[i] == pairs[j])
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hashes words of the normalized text into the buffer
+	 * 
+	 * @return number of words
+	 */
+	private static int hashWords(String text, Buffers b) {
+		int count = 0;
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			while (i < length && Character.isWhitespace(text.charAt(i))) {
+				i++;
+			}
+			int start = i;
+			while (i < length && !Character.isWhitespace(text.charAt(i))) {
+				i++;
+			}
+			if (start == i)
+				break;
+			boolean retweetPrefix = text.charAt(start) == '@' || i - start == 2
+					&& text.regionMatches(true, start, "rt", 0, 2);
+			if (count == 0 && retweetPrefix)
+				continue;
+			if (text.startsWith("http://", start) || text.startsWith("https://", start))
+				continue;
+			long hash = hashWord(text, start, i);
+			if (hash == 0)
+				continue;
+			if (count == b.words.length) {
+				long[] words = new long[count * 2];
+				System.arraycopy(b.words, 0, words, 0, count);
+				b.words = words;
+			}
+			b.words[count++] = hash;
+		}
+		return count;
+	}
+
+	/**
+	 * Hashes letters and digits of the word ignoring case
+	 * 
+	 * @return hash or 0 if the word has no letters or digits
+	 */
+	private static long hashWord(String text, int start, int end) {
+		long hash = 0xCBF29CE484222325L;
+		boolean empty = true;
+		for (int i = start; i < end; i++) {
+			char c = text.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				hash = (hash ^ Character.toLowerCase(c)) * 0x100000001B3L;
+				empty = false;
+			}
+		}
+		return empty ? 0 : hash | 1;
+	}
+
+	/**
+	 * Rotates filters if the time of the newest one is over or it is full
+	 * 
+	 * @return filters to be used for a tweet of the time
+	 */
+	private AtomicLongArray[] advance(long time) {
+		if (time < generationEnd && tweets.get() < capacity)
+			return generations;
+		synchronized (this) {
+			if (time < generationEnd && tweets.get() < capacity)
+				return generations;
+			AtomicLongArray oldest = generations[GENERATIONS - 1];
+			for (int i = 0; i < oldest.length(); i++) {
+				oldest.set(i, 0);
+			}
+			AtomicLongArray[] rotated = new AtomicLongArray[GENERATIONS];
+			rotated[0] = oldest;
+			System.arraycopy(generations, 0, rotated, 1, GENERATIONS - 1);
+			tweets.set(0);
+			generationEnd = time + generationMillis;
+			generations = rotated;
+			return rotated;
+		}
+	}
+
+	/**
+	 * Puts hash into the newest filter
+	 * 
+	 * @return true if the hash was already in one of the filters
+	 */
+	private boolean put(AtomicLongArray[] filters, long hash) {
+		int h1 = (int) hash;
+		int h2 = (int) (hash >>> 32) | 1;
+		boolean present = true;
+		for (int i = 0; i < PROBES; i++) {
+			long bit = (h1 + (long) i * h2) & mask;
+			present &= setBit(filters[0], bit);
+		}
+		for (int g = 1; g < filters.length && !present; g++) {
+			present = true;
+			for (int i = 0; i < PROBES && present; i++) {
+				long bit = (h1 + (long) i * h2) & mask;
+				present = (filters[g].get((int) (bit >>> 6)) & 1L << bit) != 0;
+			}
+		}
+		return present;
+	}
+
+	/**
+	 * Sets bit of the filter
+	 * 
+	 * @return true if the bit was already set
+	 */
+	private static boolean setBit(AtomicLongArray filter, long bit) {
+		int index = (int) (bit >>> 6);
+		long bitMask = 1L << bit;
+		long word;
+		do {
+			word = filter.get(index);
+			if ((word & bitMask) != 0)
+				return true;
+		} while (!filter.compareAndSet(index, word, word | bitMask));
+		return false;
+	}
+
+	/**
+	 * Mixes bits of the hash, the finalizer of MurmurHash3
+	 */
+	private static long mix(long hash) {
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -0,0 +1,246 @@
+package tweets;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import metrics.PipelineMetrics;
+
+import com.cybozu.labs.langdetect.Detector;
+import com.cybozu.labs.langdetect.DetectorFactory;
+import com.cybozu.labs.langdetect.LangDetectException;
+
+/**
+ * The class {@code LanguageFilter} decides whether tweets are in English.
+ * Tweets tagged as English by Twitter pass at once. The others are passed to
+ * the n-gram detector of the language detection library. Optionally a cheap
+ * prefilter runs first: texts written mostly in non-Latin scripts are
+ * rejected, and texts of at least {@value #MIN_TOKENS} words with many English
+ * stop words are accepted, so that only ambiguous texts reach the detector.
+ * Stop words are only those, which aren't words of other languages written
+ * in Latin script, but the prefilter still accepts a few texts mixing English
+ * with another language, which the detector would reject.
+ * <p>
+ * Language profiles are loaded once per JVM, so any number of filters may be
+ * created. The library's {@code Detector} accumulates text and can't be
+ * reset, so a new one is created for each ambiguous text; creating it is cheap
+ * compared to loading profiles. The filter is thread-safe.
+ * 
+ * @see <a
+ *      href="https://code.google.com/p/language-detection/">Language_Detection_Library_for_Java</a>
+ * 
+ */
+public class LanguageFilter {
+
+	/**
+	 * Common English words, which aren't words of other languages written in
+	 * Latin script, nor English words often borrowed by them, such as "love"
+	 */
+	private static final Set<String> STOP_WORDS = new HashSet<String>(Arrays.asList("the", "and", "are",
+			"were", "you", "your", "that", "this", "with", "have", "not", "but", "what", "they", "its", "dont",
+			"get", "got", "know", "out", "when", "about", "from", "how", "who", "why", "would", "there",
+			"their", "been", "she", "his", "our", "going", "today", "want", "need"));
+
+	/** Minimal share of non-Latin letters for a text to be rejected */
+	private static final double NON_LATIN_SHARE = 0.5;
+
+	/** Minimal share of stop words for a text to be accepted */
+	private static final double STOP_WORDS_SHARE = 0.3;
+
+	/** Minimal number of stop words for a text to be accepted */
+	private static final int MIN_STOP_WORDS = 3;
+
+	/** Minimal number of words for a text to be accepted */
+	private static final int MIN_TOKENS = 6;
+
+	/** Directory from which language profiles were loaded */
+	private static String loadedProfiles;
+
+	/** Indicates whether the prefilter is used */
+	private final boolean prefilter;
+
+	/** Cache of decisions for filtered texts or {@code null} */
+	private volatile TextCache cache;
+
+	/**
+	 * Creates filter, which passes every text to the detector
+	 * 
+	 * @param profilesDirectory
+	 *            directory with language profiles
+	 * @throws LangDetectException
+	 *             if language profiles can't be loaded
+	 */
+	public LanguageFilter(String profilesDirectory) throws LangDetectException {
+		this(profilesDirectory, false);
+	}
+
+	/**
+	 * Creates filter
+	 * 
+	 * @param profilesDirectory
+	 *            directory with language profiles
+	 * @param prefilter
+	 *            true to decide obvious cases without the detector
+	 * @throws LangDetectException
+	 *             if language profiles can't be loaded
+	 */
+	public LanguageFilter(String profilesDirectory, boolean prefilter) throws LangDetectException {
+		loadProfiles(profilesDirectory);
+		this.prefilter = prefilter;
+	}
+
+	/**
+	 * Sets cache, which keeps decisions for recently filtered texts, so that
+	 * language of repeated texts is detected once
+	 * 
+	 * @param cache
+	 *            cache or {@code null} to detect language of every text
+	 */
+	public void setCache(TextCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Loads language profiles unless they are already loaded
+	 * 
+	 * @param profilesDirectory
+	 *            directory with language profiles
+	 * @throws LangDetectException
+	 *             if language profiles can't be loaded
+	 */
+	public static synchronized void loadProfiles(String profilesDirectory) throws LangDetectException {
+		if (loadedProfiles == null) {
+			DetectorFactory.loadProfile(profilesDirectory);
+			loadedProfiles = profilesDirectory;
+		} else if (!loadedProfiles.equals(profilesDirectory)) {
+			throw new IllegalStateException("Language profiles were already loaded from " + loadedProfiles);
+		}
+	}
+
+	/**
+	 * Checks whether the specified tweet is in English. Uses
+	 * {@link RawTweet#getLanguage()} to identify language, but if it isn't
+	 * English the language is determined from the text.
+	 * 
+	 * @param tweet
+	 *            tweet which language is to be detected
+	 * @return true if the tweet's text is in English else return false
+	 */
+	public boolean isInEnglish(RawTweet tweet) {
+		if (tweet.getLanguage() != null && tweet.getLanguage().equals("en")) {
+			return true;
+		}
+		String filteredText = filterText(tweet);
+		TextCache cache = this.cache;
+		if (cache == null)
+			return decide(filteredText);
+		long key = TextCache.hash(filteredText, prefilter ? 1 : 0);
+		long cached = cache.get(key, -1);
+		PipelineMetrics.get().recordLookup(PipelineMetrics.Cache.LANGUAGE, cached != -1);
+		if (cached != -1)
+			return cached == 1;
+		boolean english = decide(filteredText);
+		cache.put(key, english ? 1 : 0);
+		return english;
+	}
+
+	/**
+	 * Decides whether the filtered text is in English with the prefilter, if
+	 * it is used, and the detector
+	 */
+	private boolean decide(String filteredText) {
+		if (prefilter) {
+			Decision decision = prefilter(filteredText);
+			if (decision != Decision.AMBIGUOUS)
+				return decision == Decision.ENGLISH;
+		}
+		return detect(filteredText);
+	}
+
+	/**
+	 * Detects language of the text with the n-gram detector
+	 * 
+	 * @param text
+	 *            text which language is to be detected
+	 * @return true if the text is in English
+	 */
+	public boolean detect(String text) {
+		try {
+			Detector detector = DetectorFactory.create();
+			detector.append(text);
+			return detector.detect().equals("en");
+		} catch (LangDetectException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Decision of the prefilter
+	 */
+	enum Decision {
+		ENGLISH, NOT_ENGLISH, AMBIGUOUS
+	}
+
+	/**
+	 * Decides obvious cases by the script of letters and the share of English
+	 * stop words
+	 * 
+	 * @param text
+	 *            text without urls, mentions, hashtags, punctuation and digits
+	 * @return decision or {@link Decision#AMBIGUOUS} if the detector is needed
+	 */
+	static Decision prefilter(String text) {
+		int letters = 0, nonLatin = 0;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c < 128) {
+				if (c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')
+					letters++;
+			} else if (Character.isLetter(c)) {
+				letters++;
+				if (Character.UnicodeScript.of(c) != Character.UnicodeScript.LATIN)
+					nonLatin++;
+			}
+		}
+		if (letters == 0)
+			return Decision.NOT_ENGLISH;
+		if (nonLatin >= NON_LATIN_SHARE * letters)
+			return Decision.NOT_ENGLISH;
+
+		int tokens = 0, stopWords = 0;
+		StringTokenizer tokenizer = new StringTokenizer(text);
+		while (tokenizer.hasMoreTokens()) {
+			tokens++;
+			if (STOP_WORDS.contains(tokenizer.nextToken().toLowerCase()))
+				stopWords++;
+		}
+		if (tokens >= MIN_TOKENS && stopWords >= MIN_STOP_WORDS && stopWords >= STOP_WORDS_SHARE * tokens)
+			return Decision.ENGLISH;
+		return Decision.AMBIGUOUS;
+	}
+
+	/**
+	 * Filters tweets text from urls, user mentions and hashtags.
+	 * 
+	 * @param rawTweet
+	 *            tweet which text is filtered
+	 * @return filtered text
+	 */
+	public static String filterText(RawTweet rawTweet) {
+		String filteredText = rawTweet.getText();
+
+		for (String url : rawTweet.getEntities().getUrls()) {
+			filteredText = filteredText.replace(url, "");
+		}
+		for (String user : rawTweet.getEntities().getUserMentions()) {
+			filteredText = filteredText.replace(user, "");
+		}
+
+		for (String hashTag : rawTweet.getEntities().getHashtags()) {
+			filteredText = filteredText.replace(hashTag, "");
+		}
+		filteredText = filteredText.replaceAll("\\p{Punct}|\\d", "");
+		return filteredText;
+	}
+}
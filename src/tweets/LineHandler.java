@@ -0,0 +1,19 @@
+package tweets;
+
+/**
+ * The interface {@code LineHandler} receives lines of twitter stream one at a
+ * time.
+ * 
+ * @see LineReader
+ * 
+ */
+public interface LineHandler {
+
+	/**
+	 * Processes the next line of the stream
+	 * 
+	 * @param line
+	 *            line without line terminator
+	 */
+	void handle(String line);
+}
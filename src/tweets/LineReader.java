@@ -0,0 +1,22 @@
+package tweets;
+
+import java.io.IOException;
+
+/**
+ * The interface {@code LineReader} represents source of twitter stream lines.
+ * Readers skip empty lines and deletion notices, which are recognized before
+ * the bytes of a line are decoded.
+ * 
+ */
+public interface LineReader {
+
+	/**
+	 * Reads all lines and passes them to the handler
+	 * 
+	 * @param handler
+	 *            handler of the lines
+	 * @throws IOException
+	 *             if the lines can't be read
+	 */
+	void read(LineHandler handler) throws IOException;
+}
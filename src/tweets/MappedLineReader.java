@@ -0,0 +1,238 @@
+package tweets;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import metrics.PipelineMetrics;
+
+/**
+ * The class {@code MappedLineReader} reads lines of a twitter stream file
+ * through memory-mapped windows. Line boundaries are found by scanning bytes,
+ * deletion notices are skipped by comparing their first bytes, and only the
+ * remaining lines are decoded from UTF-8, each directly from its own bytes.
+ * <p>
+ * A reader may read only a range of the file. {@link #split(File, int)}
+ * divides a file into ranges aligned to line boundaries, so that several
+ * threads can read one file in parallel.
+ * 
+ */
+public class MappedLineReader implements LineReader {
+
+	/** UTF-8 charset of the stream */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Beginning of the deletion notices */
+	static final byte[] DELETE_PREFIX = "{\"delete\"".getBytes(UTF_8);
+
+	/** Size of the mapped window, which grows for longer lines */
+	private static final int WINDOW_SIZE = 64 << 20;
+
+	/** File to be read */
+	private final File file;
+
+	/** Range of the file to be read */
+	private final long start, end;
+
+	/** Position in the file after the last line passed to handler */
+	private long position;
+
+	/** Buffer for bytes of a line */
+	private byte[] line = new byte[4096];
+
+	/** Counters of read lines */
+	private final PipelineMetrics metrics = PipelineMetrics.get();
+
+	/**
+	 * Creates reader of the whole file
+	 * 
+	 * @param file
+	 *            file to be read
+	 */
+	public MappedLineReader(File file) {
+		this(file, 0, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Creates reader of the range of the file. The range should start at the
+	 * beginning of a line.
+	 * 
+	 * @param file
+	 *            file to be read
+	 * @param start
+	 *            position of the first byte to be read
+	 * @param end
+	 *            position after the last byte to be read, if it exceeds the
+	 *            size of the file, the file is read to the end
+	 */
+	public MappedLineReader(File file, long start, long end) {
+		this.file = file;
+		this.start = start;
+		this.end = end;
+		this.position = start;
+	}
+
+	/**
+	 * Returns position in the file after the line being handled or, when
+	 * called after reading, after the last read line, including its line
+	 * terminator
+	 * 
+	 * @return position after the current line
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	@Override
+	public void read(LineHandler handler) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long end = Math.min(this.end, channel.size());
+			int windowSize = WINDOW_SIZE;
+			position = start;
+			while (position < end) {
+				long base = position;
+				int length = (int) Math.min(windowSize, end - base);
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, base, length);
+				int lineStart = 0;
+				for (int i = 0; i < length; i++) {
+					if (window.get(i) == '\n') {
+						position = base + i + 1;
+						emit(window, lineStart, i, handler);
+						lineStart = i + 1;
+					}
+				}
+				if (base + length == end) {
+					// the last line may have no terminator
+					position = end;
+					if (lineStart < length)
+						emit(window, lineStart, length, handler);
+				} else if (lineStart == 0) {
+					// the line doesn't fit into the window
+					windowSize = (int) Math.min(Integer.MAX_VALUE, 2L * windowSize);
+				}
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Decodes the line and passes it to the handler unless it is empty or a
+	 * deletion notice
+	 */
+	private void emit(MappedByteBuffer window, int from, int to, LineHandler handler) {
+		if (to > from && window.get(to - 1) == '\r')
+			to--;
+		int length = to - from;
+		if (length == 0)
+			return;
+		metrics.recordLine(length);
+		if (startsWith(window, from, length, DELETE_PREFIX)) {
+			metrics.recordDrop(PipelineMetrics.Drop.DELETED);
+			return;
+		}
+		if (line.length < length)
+			line = new byte[Math.max(length, 2 * line.length)];
+		window.position(from);
+		window.get(line, 0, length);
+		handler.handle(new String(line, 0, length, UTF_8));
+	}
+
+	private static boolean startsWith(MappedByteBuffer window, int from, int length, byte[] prefix) {
+		if (length < prefix.length)
+			return false;
+		for (int i = 0; i < prefix.length; i++) {
+			if (window.get(from + i) != prefix[i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the end of the last complete line of the file, which may be still
+	 * written
+	 * 
+	 * @param file
+	 *            file to be checked
+	 * @param from
+	 *            position from which the file is searched
+	 * @return position after the last line terminator or {@code from} if
+	 *         there is no terminator after it
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static long findEndOfLastLine(File file, long from) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			byte[] buffer = new byte[8192];
+			long position = raf.length();
+			while (position > from) {
+				int n = (int) Math.min(buffer.length, position - from);
+				position -= n;
+				raf.seek(position);
+				raf.readFully(buffer, 0, n);
+				for (int i = n - 1; i >= 0; i--) {
+					if (buffer[i] == '\n')
+						return position + i + 1;
+				}
+			}
+			return from;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Divides the file into ranges, which start at the beginning of lines
+	 * 
+	 * @param file
+	 *            file to be divided
+	 * @param parts
+	 *            desired number of ranges
+	 * @return positions of range boundaries: range {@code i} is
+	 *         {@code [bounds[i], bounds[i+1])}, there may be fewer ranges than
+	 *         desired for small files
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static long[] split(File file, int parts) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			long size = raf.length();
+			long[] bounds = new long[parts + 1];
+			int count = 1;
+			byte[] buffer = new byte[8192];
+			for (int i = 1; i < parts; i++) {
+				long position = Math.max(bounds[count - 1], size / parts * i);
+				// move to the beginning of the next line
+				boolean found = false;
+				while (!found && position < size) {
+					raf.seek(position);
+					int n = raf.read(buffer);
+					for (int j = 0; j < n; j++) {
+						if (buffer[j] == '\n') {
+							position += j + 1;
+							found = true;
+							break;
+						}
+					}
+					if (!found)
+						position += n;
+				}
+				if (position < size && position > bounds[count - 1])
+					bounds[count++] = position;
+			}
+			bounds[count++] = size;
+			long[] result = new long[count];
+			System.arraycopy(bounds, 0, result, 0, count);
+			return result;
+		} finally {
+			raf.close();
+		}
+	}
+}
@@ -0,0 +1,398 @@
+package tweets;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * The class {@code ParallelGzipInputStream} decompresses a gzip file, which
+ * consists of several members (as written by {@code bgzip} or by
+ * concatenation of gzip files), on several threads. Members are decompressed
+ * independently and returned in order.
+ * <p>
+ * Member boundaries are guessed from gzip headers found in the file, which is
+ * scanned only as far as the members submitted for decompression, so
+ * decompression starts at once. A member is accepted only if it inflates
+ * exactly up to the next boundary and its checksum and length match the
+ * trailer. Each member is inflated into an array of the length given by its
+ * trailer, and members are submitted only while their decompressed bytes not
+ * read yet fit in the budget given by the caller. When a guess turns out to
+ * be wrong, or a member is too large to be decompressed in memory, the rest
+ * of the file is decompressed sequentially starting from the last verified
+ * boundary.
+ * 
+ */
+public class ParallelGzipInputStream extends InputStream {
+
+	/** Largest compressed member, which is decompressed in memory */
+	private static final int MAX_MEMBER_SIZE = 16 << 20;
+
+	/** Smallest possible gzip member: header and trailer */
+	private static final int MIN_MEMBER_SIZE = 18;
+
+	/** Number of members being decompressed per thread */
+	private static final int MEMBERS_PER_THREAD = 2;
+
+	/** Size of the mapped window of the file, in which headers are searched */
+	private static final int WINDOW_SIZE = 1 << 20;
+
+	/** File to be decompressed */
+	private final File file;
+
+	/** Opened file, in which member boundaries are searched */
+	private final RandomAccessFile raf;
+
+	/** Size of the file */
+	private final long size;
+
+	/** Mapped part of the file and its position */
+	private MappedByteBuffer window;
+	private long windowStart;
+
+	/** Decompressing threads */
+	private final ExecutorService executor;
+
+	/** Largest number of members being decompressed */
+	private final int maxPendingMembers;
+
+	/** Largest number of decompressed bytes of members not read yet */
+	private final long maxPendingBytes;
+
+	/** Members being decompressed in order */
+	private final Queue<Member> pending = new ArrayDeque<Member>();
+
+	/** Decompressed size of the pending members */
+	private long pendingBytes;
+
+	/** Position of the next member to be submitted */
+	private long nextStart;
+
+	/**
+	 * Position, from which the file is decompressed sequentially after the
+	 * pending members, or -1
+	 */
+	private long fallbackStart = -1;
+
+	/** Decompressed member being read and position in it */
+	private byte[] current = new byte[0];
+	private int position;
+
+	/** Sequential decompression after a wrong boundary guess */
+	private InputStream fallback;
+
+	/** Whether the end of file was reached */
+	private boolean finished;
+
+	/**
+	 * Member submitted for decompression
+	 */
+	private static class Member {
+		/** Position of the member */
+		final long start;
+
+		/** Decompressed size given by the trailer */
+		final int inflatedSize;
+
+		/** Decompressed bytes */
+		final Future<byte[]> bytes;
+
+		Member(long start, int inflatedSize, Future<byte[]> bytes) {
+			this.start = start;
+			this.inflatedSize = inflatedSize;
+			this.bytes = bytes;
+		}
+	}
+
+	/**
+	 * Creates stream, which decompresses members of the file on the given
+	 * number of threads
+	 * 
+	 * @param file
+	 *            gzip file
+	 * @param threadsCount
+	 *            number of decompressing threads
+	 * @param maxPendingBytes
+	 *            largest number of decompressed bytes held in memory, members
+	 *            decompressing into more are decompressed sequentially
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public ParallelGzipInputStream(File file, int threadsCount, long maxPendingBytes) throws IOException {
+		if (threadsCount < 1)
+			throw new IllegalArgumentException("Number of threads must be positive: " + threadsCount);
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "r");
+		this.size = raf.length();
+		this.maxPendingMembers = threadsCount * MEMBERS_PER_THREAD;
+		this.maxPendingBytes = Math.min(maxPendingBytes, Integer.MAX_VALUE);
+		this.executor = Executors.newFixedThreadPool(threadsCount, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "gzip-inflater");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		submitMembers();
+	}
+
+	/**
+	 * Finds the next members and submits them for decompression, as long as
+	 * the limits of pending members allow
+	 */
+	private void submitMembers() throws IOException {
+		while (fallbackStart < 0 && nextStart < size && pending.size() < maxPendingMembers) {
+			long end = findEnd(nextStart);
+			long inflatedSize = end < 0 ? -1 : readInt(end - 4) & 0xFFFFFFFFL;
+			if (end < 0 || inflatedSize > maxPendingBytes) {
+				// too large to be decompressed in memory
+				fallbackStart = nextStart;
+				return;
+			}
+			if (!pending.isEmpty() && pendingBytes + inflatedSize > maxPendingBytes)
+				return;
+			submit(nextStart, end, (int) inflatedSize);
+			pendingBytes += inflatedSize;
+			nextStart = end;
+		}
+	}
+
+	private void submit(final long start, final long end, final int inflatedSize) {
+		pending.add(new Member(start, inflatedSize, executor.submit(new Callable<byte[]>() {
+			@Override
+			public byte[] call() throws IOException {
+				return inflate(readBytes(start, end), inflatedSize);
+			}
+		})));
+	}
+
+	/**
+	 * Finds the probable end of the member, which is the beginning of the next
+	 * one or the end of file
+	 * 
+	 * @param start
+	 *            position of the member
+	 * @return end of the member or -1 if it is larger than
+	 *         {@value #MAX_MEMBER_SIZE} bytes
+	 */
+	private long findEnd(long start) throws IOException {
+		for (long position = start + MIN_MEMBER_SIZE; position - start <= MAX_MEMBER_SIZE; position++) {
+			if (position + 4 > size)
+				return size - start <= MAX_MEMBER_SIZE ? size : -1;
+			if (isHeader(position))
+				return position;
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks magic number, deflate method and reserved flags of gzip header
+	 */
+	private boolean isHeader(long position) throws IOException {
+		return getByte(position) == (byte) 0x1f && getByte(position + 1) == (byte) 0x8b
+				&& getByte(position + 2) == 8 && (getByte(position + 3) & 0xE0) == 0;
+	}
+
+	private byte getByte(long position) throws IOException {
+		if (window == null || position < windowStart || position >= windowStart + window.limit()) {
+			windowStart = position;
+			window = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, position,
+					Math.min(WINDOW_SIZE, size - position));
+		}
+		return window.get((int) (position - windowStart));
+	}
+
+	private int readInt(long position) throws IOException {
+		return getByte(position) & 0xFF | (getByte(position + 1) & 0xFF) << 8
+				| (getByte(position + 2) & 0xFF) << 16 | (getByte(position + 3) & 0xFF) << 24;
+	}
+
+	private byte[] readBytes(long start, long end) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			byte[] bytes = new byte[(int) (end - start)];
+			raf.seek(start);
+			raf.readFully(bytes);
+			return bytes;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Decompresses one gzip member, which must end exactly at the end of the
+	 * bytes
+	 * 
+	 * @param member
+	 *            bytes of the member
+	 * @param inflatedSize
+	 *            decompressed size given by the trailer of the member
+	 * @throws IOException
+	 *             if the bytes aren't a complete gzip member
+	 */
+	static byte[] inflate(byte[] member, int inflatedSize) throws IOException {
+		int offset = skipHeader(member);
+		Inflater inflater = new Inflater(true);
+		try {
+			inflater.setInput(member, offset, member.length - offset);
+			byte[] out = new byte[inflatedSize];
+			byte[] excess = new byte[1];
+			int length = 0;
+			while (!inflater.finished()) {
+				int n = length < out.length ? inflater.inflate(out, length, out.length - length) : inflater
+						.inflate(excess);
+				if (length == out.length && n > 0)
+					throw new IOException("Gzip member is longer than its trailer says");
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+					throw new IOException("Truncated gzip member");
+				length += n;
+			}
+			if (inflater.getRemaining() != 8)
+				throw new IOException("Gzip member doesn't end at the boundary");
+			CRC32 crc = new CRC32();
+			crc.update(out, 0, length);
+			if ((int) crc.getValue() != readInt(member, member.length - 8) || length != out.length)
+				throw new IOException("Corrupt gzip member");
+			return out;
+		} catch (DataFormatException e) {
+			throw new IOException("Invalid gzip member", e);
+		} finally {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Skips gzip header
+	 * 
+	 * @return offset of compressed data
+	 */
+	private static int skipHeader(byte[] member) throws IOException {
+		if (member.length < MIN_MEMBER_SIZE)
+			throw new IOException("Truncated gzip member");
+		int flags = member[3] & 0xFF;
+		int offset = 10;
+		if ((flags & 4) != 0)
+			offset += 2 + (member[offset] & 0xFF | (member[offset + 1] & 0xFF) << 8);
+		for (int flag = 8; flag <= 16; flag <<= 1) {
+			if ((flags & flag) != 0) {
+				while (offset < member.length && member[offset] != 0) {
+					offset++;
+				}
+				offset++;
+			}
+		}
+		if ((flags & 2) != 0)
+			offset += 2;
+		if (offset >= member.length)
+			throw new IOException("Truncated gzip header");
+		return offset;
+	}
+
+	private static int readInt(byte[] bytes, int offset) {
+		return bytes[offset] & 0xFF | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16
+				| (bytes[offset + 3] & 0xFF) << 24;
+	}
+
+	/**
+	 * Moves to the next decompressed member
+	 * 
+	 * @return false at the end of file
+	 */
+	private boolean nextMember() throws IOException {
+		while (position == current.length) {
+			if (fallback != null || finished)
+				return false;
+			Member member = pending.poll();
+			if (member == null) {
+				if (fallbackStart >= 0) {
+					decompressSequentially(fallbackStart);
+					return false;
+				}
+				finished = true;
+				close();
+				return false;
+			}
+			try {
+				current = member.bytes.get();
+				position = 0;
+				pendingBytes -= member.inflatedSize;
+				submitMembers();
+			} catch (ExecutionException e) {
+				// the member doesn't end at the guessed boundary
+				decompressSequentially(member.start);
+				return false;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while decompressing", e);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Stops parallel decompression and decompresses the rest of file
+	 * sequentially
+	 * 
+	 * @param start
+	 *            position of a member, from which the file is decompressed
+	 */
+	private void decompressSequentially(long start) throws IOException {
+		executor.shutdownNow();
+		pending.clear();
+		FileInputStream in = new FileInputStream(file);
+		skipFully(in, start);
+		fallback = new GZIPInputStream(in, 1 << 16);
+	}
+
+	private static void skipFully(InputStream in, long n) throws IOException {
+		while (n > 0) {
+			long skipped = in.skip(n);
+			if (skipped <= 0)
+				throw new IOException("Can't skip to the gzip member");
+			n -= skipped;
+		}
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (!nextMember())
+			return fallback == null ? -1 : fallback.read();
+		return current[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0)
+			return 0;
+		if (!nextMember())
+			return fallback == null ? -1 : fallback.read(b, off, len);
+		int n = Math.min(len, current.length - position);
+		System.arraycopy(current, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public void close() throws IOException {
+		executor.shutdownNow();
+		raf.close();
+		if (fallback != null)
+			fallback.close();
+	}
+}
@@ -28,6 +28,9 @@ public class RawTweet {
 	/** Language of the tweet's text */
 	private String lang;
 
+	/** Time the tweet was posted in milliseconds or 0 if it is unknown */
+	private long timestamp_ms;
+
 	/** The user who posted this tweet */
 	private Users user = new Users();
 
@@ -40,11 +43,69 @@ public class RawTweet {
 	/** Entity which includes urls, hashtags and user mentions*/
 	 private Entities entities = new Entities();
 
+	/** Parts of the tweet kept for reuse when they are {@code null} */
+	private transient Users spareUser;
+	private transient Coordinates spareCoordinates;
+	private transient Places sparePlace;
+
+	/**
+	 * Creates empty tweet, which may be filled by
+	 * {@link TweetStreamParser#parseLine(String, RawTweet)}
+	 */
+	public RawTweet() {
+
+	}
+
 	/**
-	 * Doesn't allow to instantiate this class without Gson
+	 * Clears all the fields, so that the tweet can be filled with the next
+	 * tweet of the stream. Nested parts are kept and reused.
 	 */
-	private RawTweet() {
+	void reset() {
+		text = null;
+		lang = null;
+		timestamp_ms = 0;
+		user = user != null ? user : spareUser;
+		coordinates = coordinates != null ? coordinates : spareCoordinates;
+		place = place != null ? place : sparePlace;
+		user.location = null;
+		user.id_str = null;
+		coordinates.coordinates = null;
+		place.full_name = null;
+		entities.hashtags.clear();
+		entities.urls.clear();
+		entities.user_mentions.clear();
+	}
 
+	public void setText(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Sets user of the tweet to {@code null} keeping its object for reuse
+	 */
+	void clearUser() {
+		if (user != null)
+			spareUser = user;
+		user = null;
+	}
+
+	/**
+	 * Sets coordinates of the tweet to {@code null} keeping their object for
+	 * reuse
+	 */
+	void clearCoordinates() {
+		if (coordinates != null)
+			spareCoordinates = coordinates;
+		coordinates = null;
+	}
+
+	/**
+	 * Sets place of the tweet to {@code null} keeping its object for reuse
+	 */
+	void clearPlace() {
+		if (place != null)
+			sparePlace = place;
+		place = null;
 	}
 
 	public Coordinates getCoordinates() {
@@ -71,6 +132,14 @@ public class RawTweet {
 		return text;
 	}
 
+	public long getTimestampMillis() {
+		return timestamp_ms;
+	}
+
+	public void setTimestampMillis(long timestampMillis) {
+		this.timestamp_ms = timestampMillis;
+	}
+
 	public Entities getEntities() {
 		return entities;
 	}
@@ -91,6 +160,9 @@ public class RawTweet {
 		/** The user-defined location for the account's profile */
 		private String location;
 
+		/** Identifier of the user */
+		private String id_str;
+
 		public void setLocation(String location) {
 			this.location = location;
 		}
@@ -99,6 +171,14 @@ public class RawTweet {
 			return location;
 		}
 
+		public void setId(String id) {
+			this.id_str = id;
+		}
+
+		public String getId() {
+			return id_str;
+		}
+
 	}
 
 	/**
@@ -146,7 +226,9 @@ public class RawTweet {
 		}
 	}
 	/**
-	 * The class {@code Entities} represents modified Twitter's Entity class
+	 * The class {@code Entities} represents modified Twitter's Entity class,
+	 * which keeps only texts of hashtags, urls and screen names of mentioned
+	 * users
 	 * 
 	 * @see <a
 	 *      href="https://https://dev.twitter.com/docs/platform-objects/entities">Twitter_documentation:Entities</a>
@@ -154,44 +236,32 @@ public class RawTweet {
 	 */
 	
 	public class Entities {
-		private Hashtag[] hashtags;
-		private Url[] urls;
-		private UserMention[] user_mentions;
+		private List<String> hashtags = new ArrayList<String>();
+		private List<String> urls = new ArrayList<String>();
+		private List<String> user_mentions = new ArrayList<String>();
 
 		public String[] getHashtags() {
-			List<String> list = new ArrayList<String>();
-			for (Hashtag Hashtag : hashtags) {
-				list.add(Hashtag.text);
-			}
-			return list.toArray(new String[]{});
+			return hashtags.toArray(new String[hashtags.size()]);
 		}
 
 		public String[] getUrls() {
-			List<String> list = new ArrayList<String>();
-			for (Url url : urls) {
-				list.add(url.url);
-			}
-			return list.toArray(new String[]{});
+			return urls.toArray(new String[urls.size()]);
 		}
 
 		public String[] getUserMentions() {
-			List<String> list = new ArrayList<String>();
-			for (UserMention userMention : user_mentions) {
-				list.add(userMention.screen_name);
-			}
-			return list.toArray(new String[]{});
+			return user_mentions.toArray(new String[user_mentions.size()]);
 		}
 
-		public class Hashtag {
-			private String text;
+		void addHashtag(String hashtag) {
+			hashtags.add(hashtag);
 		}
 
-		public class Url {
-			private String url;
+		void addUrl(String url) {
+			urls.add(url);
 		}
 
-		public class UserMention {
-			private String screen_name;
+		void addUserMention(String userMention) {
+			user_mentions.add(userMention);
 		}
 	}
 }
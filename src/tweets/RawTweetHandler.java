@@ -0,0 +1,20 @@
+package tweets;
+
+/**
+ * The interface {@code RawTweetHandler} receives English tweets one at a time
+ * while the twitter stream is being parsed, so that the stream doesn't have to
+ * be kept in memory.
+ * 
+ * @see TweetStreamParser#parse(java.io.File, RawTweetHandler)
+ * 
+ */
+public interface RawTweetHandler {
+
+	/**
+	 * Processes the next English tweet of the stream
+	 * 
+	 * @param tweet
+	 *            raw tweet in English
+	 */
+	void handle(RawTweet tweet);
+}
@@ -0,0 +1,102 @@
+package tweets;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import metrics.PipelineMetrics;
+
+/**
+ * The class {@code StreamLineReader} reads lines of a twitter stream from an
+ * input stream, such as a decompressed archive. Like {@link MappedLineReader}
+ * it splits lines and skips deletion notices on the bytes before decoding the
+ * remaining lines from UTF-8.
+ * 
+ */
+public class StreamLineReader implements LineReader {
+
+	/** UTF-8 charset of the stream */
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Stream to be read */
+	private final InputStream in;
+
+	/** Buffer for the bytes read from the stream */
+	private byte[] buffer = new byte[1 << 16];
+
+	/** Counters of read lines */
+	private final PipelineMetrics metrics = PipelineMetrics.get();
+
+	/**
+	 * Creates reader of the stream. The stream is closed when all its lines
+	 * are read.
+	 * 
+	 * @param in
+	 *            stream with Twitter's data
+	 */
+	public StreamLineReader(InputStream in) {
+		this.in = in;
+	}
+
+	@Override
+	public void read(LineHandler handler) throws IOException {
+		try {
+			int lineStart = 0;
+			int length = 0;
+			int n;
+			while ((n = in.read(buffer, length, buffer.length - length)) != -1) {
+				int scanFrom = length;
+				length += n;
+				for (int i = scanFrom; i < length; i++) {
+					if (buffer[i] == '\n') {
+						emit(lineStart, i, handler);
+						lineStart = i + 1;
+					}
+				}
+				// keep the incomplete line at the beginning of the buffer
+				length -= lineStart;
+				if (lineStart == 0 && length == buffer.length) {
+					byte[] larger = new byte[2 * buffer.length];
+					System.arraycopy(buffer, 0, larger, 0, length);
+					buffer = larger;
+				} else {
+					System.arraycopy(buffer, lineStart, buffer, 0, length);
+				}
+				lineStart = 0;
+			}
+			if (length > 0)
+				emit(0, length, handler);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Decodes the line and passes it to the handler unless it is empty or a
+	 * deletion notice
+	 */
+	private void emit(int from, int to, LineHandler handler) {
+		if (to > from && buffer[to - 1] == '\r')
+			to--;
+		int length = to - from;
+		if (length == 0)
+			return;
+		metrics.recordLine(length);
+		if (isDeletion(from, length)) {
+			metrics.recordDrop(PipelineMetrics.Drop.DELETED);
+			return;
+		}
+		handler.handle(new String(buffer, from, length, UTF_8));
+	}
+
+	private boolean isDeletion(int from, int length) {
+		byte[] prefix = MappedLineReader.DELETE_PREFIX;
+		if (length < prefix.length)
+			return false;
+		for (int i = 0; i < prefix.length; i++) {
+			if (buffer[from + i] != prefix[i])
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,102 @@
+package tweets;
+
+/**
+ * The class {@code TextCache} is a bounded cache of values computed from
+ * texts, such as sentiment of a tweet or the decision whether it is in
+ * English, so that repeated texts are scored or detected once.
+ * <p>
+ * Keys are 64-bit hashes of texts, values are longs. The cache is a
+ * direct-mapped table: each key has one slot chosen by its hash, and a new
+ * entry simply replaces the one in its slot, so the cache never grows and
+ * neither locks nor allocates. A slot keeps the value and the key xor the
+ * value; an entry is found only if both agree, so an entry torn by threads
+ * writing the same slot at once is seen as missing rather than returning a
+ * wrong value.
+ * 
+ */
+public class TextCache {
+
+	/** Slots, two longs each: key xor value and value */
+	private final long[] table;
+
+	/** Number of slots minus one */
+	private final int mask;
+
+	/**
+	 * Creates cache
+	 * 
+	 * @param capacity
+	 *            number of entries, which is rounded up to a power of two
+	 */
+	public TextCache(int capacity) {
+		if (capacity < 1 || capacity > 1 << 29)
+			throw new IllegalArgumentException("Capacity must be between 1 and 2^29: " + capacity);
+		int slots = Integer.highestOneBit(capacity);
+		if (slots < capacity)
+			slots <<= 1;
+		table = new long[slots * 2];
+		mask = slots - 1;
+	}
+
+	/**
+	 * Computes 64-bit hash of the text
+	 * 
+	 * @param text
+	 *            text
+	 * @param salt
+	 *            value, which distinguishes keys of texts computed in
+	 *            different ways
+	 * @return hash, which is never 0
+	 */
+	public static long hash(String text, long salt) {
+		long hash = 0xCBF29CE484222325L ^ salt;
+		for (int i = 0; i < text.length(); i++) {
+			hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+		}
+		// finalizer of MurmurHash3 spreads bits into the slot index
+		hash ^= hash >>> 33;
+		hash *= 0xFF51AFD7ED558CCDL;
+		hash ^= hash >>> 33;
+		hash *= 0xC4CEB9FE1A85EC53L;
+		hash ^= hash >>> 33;
+		return hash != 0 ? hash : 1;
+	}
+
+	/**
+	 * Returns value of the key
+	 * 
+	 * @param key
+	 *            hash of the text computed by {@link #hash(String, long)}
+	 * @param missing
+	 *            value returned if the key isn't in the cache
+	 * @return value or {@code missing}
+	 */
+	public long get(long key, long missing) {
+		int slot = ((int) key & mask) << 1;
+		long value = table[slot + 1];
+		return (table[slot] ^ value) == key ? value : missing;
+	}
+
+	/**
+	 * Puts the value of the key into the cache replacing the entry in its slot
+	 * 
+	 * @param key
+	 *            hash of the text computed by {@link #hash(String, long)}
+	 * @param value
+	 *            value
+	 */
+	public void put(long key, long value) {
+		int slot = ((int) key & mask) << 1;
+		table[slot] = key ^ value;
+		table[slot + 1] = value;
+	}
+
+	/**
+	 * Returns number of entries the cache may hold
+	 * 
+	 * @return capacity
+	 */
+	public int getCapacity() {
+		return mask + 1;
+	}
+}
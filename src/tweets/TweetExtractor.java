@@ -0,0 +1,445 @@
+package tweets;
+
+import com.google.gson.JsonSyntaxException;
+
+/**
+ * The class {@code TweetExtractor} fills {@link RawTweet} from a line of
+ * twitter stream. Unlike binding the whole line with {@code Gson}, it scans the
+ * Json text once, reads only the fields of {@code RawTweet} and skips all other
+ * subtrees, like retweeted status or user profile, without building anything
+ * for them. The same {@code RawTweet} may be filled again and again, so
+ * extracting creates only the strings of the extracted fields. An extractor
+ * isn't thread-safe, each thread should use its own one.
+ * 
+ */
+public class TweetExtractor {
+
+	/** Json text being scanned */
+	private String json;
+
+	/** Position of the next character to be scanned */
+	private int position;
+
+	/** Buffer for strings with escape sequences */
+	private StringBuilder sb = new StringBuilder();
+
+	/**
+	 * Fills the tweet with the fields of the Json object
+	 * 
+	 * @param line
+	 *            Json representation of the tweet
+	 * @param tweet
+	 *            tweet to be filled, all its previous contents is cleared
+	 * @throws JsonSyntaxException
+	 *             if the line isn't a valid Json object
+	 */
+	public void extract(String line, RawTweet tweet) {
+		json = line;
+		position = 0;
+		tweet.reset();
+		try {
+			expect('{');
+			if (!tryConsume('}')) {
+				do {
+					int keyStart = readKeyStart();
+					int keyEnd = position - 1;
+					expect(':');
+					if (keyEquals(keyStart, keyEnd, "text"))
+						tweet.setText(readString());
+					else if (keyEquals(keyStart, keyEnd, "lang"))
+						tweet.setLanguage(readString());
+					else if (keyEquals(keyStart, keyEnd, "timestamp_ms"))
+						tweet.setTimestampMillis(readLong());
+					else if (keyEquals(keyStart, keyEnd, "user"))
+						readUser(tweet);
+					else if (keyEquals(keyStart, keyEnd, "coordinates"))
+						readCoordinates(tweet);
+					else if (keyEquals(keyStart, keyEnd, "place"))
+						readPlace(tweet);
+					else if (keyEquals(keyStart, keyEnd, "entities"))
+						readEntities(tweet);
+					else
+						skipValue();
+				} while (tryConsume(','));
+				expect('}');
+			}
+		} catch (StringIndexOutOfBoundsException e) {
+			throw syntaxError("Unexpected end of line");
+		} finally {
+			json = null;
+		}
+	}
+
+	private void readUser(RawTweet tweet) {
+		if (tryConsumeNull()) {
+			tweet.clearUser();
+			return;
+		}
+		expect('{');
+		if (tryConsume('}'))
+			return;
+		do {
+			int keyStart = readKeyStart();
+			int keyEnd = position - 1;
+			expect(':');
+			if (keyEquals(keyStart, keyEnd, "location"))
+				tweet.getUser().setLocation(readString());
+			else if (keyEquals(keyStart, keyEnd, "id_str"))
+				tweet.getUser().setId(readString());
+			else if (keyEquals(keyStart, keyEnd, "id") && tweet.getUser().getId() == null)
+				tweet.getUser().setId(readLiteral());
+			else
+				skipValue();
+		} while (tryConsume(','));
+		expect('}');
+	}
+
+	private void readCoordinates(RawTweet tweet) {
+		if (tryConsumeNull()) {
+			tweet.clearCoordinates();
+			return;
+		}
+		expect('{');
+		if (tryConsume('}'))
+			return;
+		do {
+			int keyStart = readKeyStart();
+			int keyEnd = position - 1;
+			expect(':');
+			if (keyEquals(keyStart, keyEnd, "coordinates"))
+				tweet.getCoordinates().setCoordinates(readNumbers(tweet.getCoordinates().getCoordinates()));
+			else
+				skipValue();
+		} while (tryConsume(','));
+		expect('}');
+	}
+
+	private void readPlace(RawTweet tweet) {
+		if (tryConsumeNull()) {
+			tweet.clearPlace();
+			return;
+		}
+		expect('{');
+		if (tryConsume('}'))
+			return;
+		do {
+			int keyStart = readKeyStart();
+			int keyEnd = position - 1;
+			expect(':');
+			if (keyEquals(keyStart, keyEnd, "full_name"))
+				tweet.getPlace().setFullName(readString());
+			else
+				skipValue();
+		} while (tryConsume(','));
+		expect('}');
+	}
+
+	private void readEntities(RawTweet tweet) {
+		if (tryConsumeNull())
+			return;
+		expect('{');
+		if (tryConsume('}'))
+			return;
+		do {
+			int keyStart = readKeyStart();
+			int keyEnd = position - 1;
+			expect(':');
+			if (keyEquals(keyStart, keyEnd, "hashtags"))
+				readEntityList(tweet.getEntities(), "text", 0);
+			else if (keyEquals(keyStart, keyEnd, "urls"))
+				readEntityList(tweet.getEntities(), "url", 1);
+			else if (keyEquals(keyStart, keyEnd, "user_mentions"))
+				readEntityList(tweet.getEntities(), "screen_name", 2);
+			else
+				skipValue();
+		} while (tryConsume(','));
+		expect('}');
+	}
+
+	/**
+	 * Reads array of entity objects adding the given field of each entity to
+	 * the entities of the tweet
+	 * 
+	 * @param kind
+	 *            0 for hashtags, 1 for urls and 2 for user mentions
+	 */
+	private void readEntityList(RawTweet.Entities entities, String field, int kind) {
+		if (tryConsumeNull())
+			return;
+		expect('[');
+		if (tryConsume(']'))
+			return;
+		do {
+			expect('{');
+			if (tryConsume('}'))
+				continue;
+			do {
+				int keyStart = readKeyStart();
+				int keyEnd = position - 1;
+				expect(':');
+				if (keyEquals(keyStart, keyEnd, field)) {
+					String value = readString();
+					if (value == null)
+						continue;
+					if (kind == 0)
+						entities.addHashtag(value);
+					else if (kind == 1)
+						entities.addUrl(value);
+					else
+						entities.addUserMention(value);
+				} else {
+					skipValue();
+				}
+			} while (tryConsume(','));
+			expect('}');
+		} while (tryConsume(','));
+		expect(']');
+	}
+
+	/**
+	 * Reads array of numbers
+	 * 
+	 * @param reuse
+	 *            array, which is filled if it has the right length
+	 * @return array of numbers or {@code null}
+	 */
+	private double[] readNumbers(double[] reuse) {
+		if (tryConsumeNull())
+			return null;
+		expect('[');
+		if (tryConsume(']'))
+			return new double[0];
+		int start = position;
+		int count = 0;
+		do {
+			skipValue();
+			count++;
+		} while (tryConsume(','));
+		expect(']');
+		double[] numbers = reuse != null && reuse.length == count ? reuse : new double[count];
+		position = start;
+		for (int i = 0; i < count; i++) {
+			numbers[i] = readNumber();
+			tryConsume(',');
+		}
+		expect(']');
+		return numbers;
+	}
+
+	private double readNumber() {
+		skipWhitespace();
+		int start = position;
+		while (position < json.length() && isNumberChar(json.charAt(position))) {
+			position++;
+		}
+		try {
+			return Double.parseDouble(json.substring(start, position));
+		} catch (NumberFormatException e) {
+			throw syntaxError("Expected number");
+		}
+	}
+
+	/**
+	 * Reads integer, which may be written as a number or as a string, like
+	 * timestamps of the stream
+	 * 
+	 * @return integer or 0 if the value is null
+	 */
+	private long readLong() {
+		String value = readLiteral();
+		if (value == null)
+			return 0;
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw syntaxError("Expected integer");
+		}
+	}
+
+	/**
+	 * Reads string or literal value as it is written
+	 * 
+	 * @return text of the value or {@code null} if the value is null
+	 */
+	private String readLiteral() {
+		skipWhitespace();
+		if (position < json.length() && json.charAt(position) == '"')
+			return readString();
+		if (tryConsumeNull())
+			return null;
+		int start = position;
+		skipValue();
+		return json.substring(start, position);
+	}
+
+	/**
+	 * Reads string value
+	 * 
+	 * @return string or {@code null} if the value is null
+	 */
+	private String readString() {
+		if (tryConsumeNull())
+			return null;
+		expect('"');
+		int start = position;
+		char c;
+		while ((c = json.charAt(position)) != '"') {
+			if (c == '\\')
+				return readEscapedString(start);
+			position++;
+		}
+		position++;
+		return json.substring(start, position - 1);
+	}
+
+	/**
+	 * Reads the rest of a string, which contains escape sequences
+	 * 
+	 * @param start
+	 *            position of the first character of the string
+	 */
+	private String readEscapedString(int start) {
+		sb.setLength(0);
+		sb.append(json, start, position);
+		char c;
+		while ((c = json.charAt(position++)) != '"') {
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			c = json.charAt(position++);
+			switch (c) {
+			case 'n':
+				sb.append('\n');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'u':
+				try {
+					sb.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+				} catch (NumberFormatException e) {
+					throw syntaxError("Invalid unicode escape");
+				}
+				position += 4;
+				break;
+			default:
+				sb.append(c);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Reads object key and returns position of its first character. The key
+	 * ends one character before the current position.
+	 */
+	private int readKeyStart() {
+		expect('"');
+		int start = position;
+		char c;
+		while ((c = json.charAt(position++)) != '"') {
+			if (c == '\\')
+				position++;
+		}
+		return start;
+	}
+
+	private boolean keyEquals(int start, int end, String key) {
+		return end - start == key.length() && json.startsWith(key, start);
+	}
+
+	/**
+	 * Skips value of any type including nested objects and arrays
+	 */
+	private void skipValue() {
+		skipWhitespace();
+		char c = json.charAt(position);
+		if (c == '"') {
+			skipString();
+		} else if (c == '{' || c == '[') {
+			int depth = 0;
+			do {
+				c = json.charAt(position);
+				if (c == '"') {
+					skipString();
+					continue;
+				}
+				if (c == '{' || c == '[')
+					depth++;
+				else if (c == '}' || c == ']')
+					depth--;
+				position++;
+			} while (depth > 0);
+		} else {
+			int start = position;
+			while (position < json.length() && isLiteralChar(json.charAt(position))) {
+				position++;
+			}
+			if (start == position)
+				throw syntaxError("Unexpected character '" + c + "'");
+		}
+	}
+
+	private void skipString() {
+		position++;
+		char c;
+		while ((c = json.charAt(position++)) != '"') {
+			if (c == '\\')
+				position++;
+		}
+	}
+
+	private boolean tryConsumeNull() {
+		skipWhitespace();
+		if (json.startsWith("null", position)) {
+			position += 4;
+			return true;
+		}
+		return false;
+	}
+
+	private boolean tryConsume(char c) {
+		skipWhitespace();
+		if (position < json.length() && json.charAt(position) == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	private void expect(char c) {
+		if (!tryConsume(c))
+			throw syntaxError("Expected '" + c + "'");
+	}
+
+	private void skipWhitespace() {
+		while (position < json.length()) {
+			char c = json.charAt(position);
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r')
+				break;
+			position++;
+		}
+	}
+
+	private static boolean isNumberChar(char c) {
+		return c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E';
+	}
+
+	private static boolean isLiteralChar(char c) {
+		return isNumberChar(c) || c >= 'a' && c <= 'z';
+	}
+
+	private JsonSyntaxException syntaxError(String message) {
+		return new JsonSyntaxException(message + " at position " + position + " of: " + json);
+	}
+}
@@ -1,15 +1,13 @@
 package tweets;
 
 import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
 
-import com.cybozu.labs.langdetect.Detector;
-import com.cybozu.labs.langdetect.DetectorFactory;
+import metrics.PipelineMetrics;
+
 import com.cybozu.labs.langdetect.LangDetectException;
-import com.google.gson.Gson;
 
 /**
  * The {@code TweetStreamParser} class represents parser of the twitter stream.
@@ -21,6 +19,20 @@ public class TweetStreamParser {
 	/** List of raw tweets in English */
 	private List<RawTweet> rawTweets;
 
+	/** Extractors of tweets used by each thread */
+	private static final ThreadLocal<TweetExtractor> extractors = new ThreadLocal<TweetExtractor>() {
+		@Override
+		protected TweetExtractor initialValue() {
+			return new TweetExtractor();
+		}
+	};
+
+	/** Filter of tweets in English */
+	private LanguageFilter languageFilter;
+
+	/** Filter of duplicate tweets or {@code null} if duplicates are kept */
+	private DuplicateFilter duplicateFilter;
+
 	/**
 	 * Parses twitter stream file into a list of English tweets
 	 * 
@@ -28,83 +40,200 @@ public class TweetStreamParser {
 	 *            file with Twitter's data
 	 * @throws LangDetectException
 	 *             if language profiles can't be loaded
-	 * @throws FileNotFoundException
-	 *             if twitterStream file can't be found
+	 * @throws IOException
+	 *             if twitterStream file can't be read
 	 */
-	public TweetStreamParser(File twitterStreamFile) throws LangDetectException,
-			FileNotFoundException {
-		
-		DetectorFactory.loadProfile(new String("profiles"));
+	public TweetStreamParser(File twitterStreamFile) throws LangDetectException, IOException {
+		this(twitterStreamFile, new LanguageFilter(new String("profiles")));
+	}
+
+	/**
+	 * Parses twitter stream file into a list of English tweets using the given
+	 * language filter
+	 * 
+	 * @param twitterStreamFile
+	 *            file with Twitter's data
+	 * @param languageFilter
+	 *            filter of tweets in English
+	 * @throws IOException
+	 *             if twitterStream file can't be read
+	 */
+	public TweetStreamParser(File twitterStreamFile, LanguageFilter languageFilter)
+			throws IOException {
+		this(twitterStreamFile, languageFilter, null);
+	}
+
+	/**
+	 * Parses twitter stream file into a list of English tweets dropping
+	 * duplicates
+	 * 
+	 * @param twitterStreamFile
+	 *            file with Twitter's data
+	 * @param languageFilter
+	 *            filter of tweets in English
+	 * @param duplicateFilter
+	 *            filter of duplicate tweets or {@code null} to keep them
+	 * @throws IOException
+	 *             if twitterStream file can't be read
+	 */
+	public TweetStreamParser(File twitterStreamFile, LanguageFilter languageFilter,
+			DuplicateFilter duplicateFilter) throws IOException {
+		this(languageFilter);
+		this.duplicateFilter = duplicateFilter;
 		rawTweets = new ArrayList<RawTweet>();
-		Scanner scn = new Scanner(twitterStreamFile).useDelimiter("\r\n");
-		Gson gson = new Gson();
-		while (scn.hasNext()) {
-			String line = scn.nextLine();
-			if (line.startsWith("{\"delete\""))
-				continue;
-			RawTweet rawTweet = gson.fromJson(line, RawTweet.class);
-			if (isInEnglish(rawTweet)) {
-				rawTweet.setLanguage("en");
-				rawTweets.add(rawTweet);
+		CompressedInput.openReader(twitterStreamFile).read(new LineHandler() {
+			@Override
+			public void handle(String line) {
+				RawTweet rawTweet = parseLine(line);
+				if (rawTweet != null)
+					rawTweets.add(rawTweet);
 			}
-		}
-		scn.close();
+		});
+	}
+
+	/**
+	 * Creates parser, which doesn't collect tweets, but passes them to the
+	 * handler given to {@link #parse(File, RawTweetHandler)}
+	 * 
+	 * @throws LangDetectException
+	 *             if language profiles can't be loaded
+	 */
+	public TweetStreamParser() throws LangDetectException {
+		this(new LanguageFilter(new String("profiles")));
+	}
+
+	/**
+	 * Creates parser for streaming, which uses the given language filter
+	 * 
+	 * @param languageFilter
+	 *            filter of tweets in English
+	 */
+	public TweetStreamParser(LanguageFilter languageFilter) {
+		this.languageFilter = languageFilter;
 	}
 
+	/**
+	 * Sets filter, which drops duplicate tweets before their language is
+	 * detected
+	 * 
+	 * @param duplicateFilter
+	 *            filter of duplicate tweets or {@code null} to keep them
+	 */
+	public void setDuplicateFilter(DuplicateFilter duplicateFilter) {
+		this.duplicateFilter = duplicateFilter;
+	}
+
+	/**
+	 * Returns list of English tweets or {@code null} if the parser was created
+	 * for streaming
+	 * 
+	 * @return list of raw tweets
+	 */
 	public List<RawTweet> getListOfTweets() {
 		return rawTweets;
 	}
 
 	/**
-	 * Checks whether the specified tweet is in English. Uses
-	 * {@link RawTweet#lang} to identify language, but if it's {@code null}
-	 * language is detected with the use of library.
+	 * Parses twitter stream file line by line and passes each English tweet
+	 * to the handler without keeping it. The same {@code RawTweet} object is
+	 * filled with every tweet, so the handler must not keep it.
 	 * 
-	 * @see <a
-	 *      href="https://code.google.com/p/language-detection/">Language_Detection_Library_for_Java</a>
+	 * @param twitterStreamFile
+	 *            file with Twitter's data, possibly compressed
+	 * @param handler
+	 *            handler of English tweets
+	 * @throws IOException
+	 *             if twitterStream file can't be read
+	 */
+	public void parse(File twitterStreamFile, RawTweetHandler handler) throws IOException {
+		parse(CompressedInput.openReader(twitterStreamFile), handler);
+	}
+
+	/**
+	 * Parses lines of the reader and passes each English tweet to the
+	 * handler, reusing one {@code RawTweet} like
+	 * {@link #parse(File, RawTweetHandler)}
 	 * 
-	 * @param tweet
-	 *            tweet which language is to be detected
-	 * @return true if the tweet's text is in English else return false
+	 * @param reader
+	 *            source of stream lines
+	 * @param handler
+	 *            handler of English tweets
+	 * @throws IOException
+	 *             if the lines can't be read
 	 */
-	private boolean isInEnglish(RawTweet tweet) {
-		if (tweet.getLanguage() != null && tweet.getLanguage().equals("en")) {
-			return true;
-		}
-		String filteredText = filterText(tweet);
-		try {
-			Detector detector = DetectorFactory.create();
-			detector.append(filteredText);
-			String lang = detector.detect();
-			if (lang.equals("en"))
-				return true;
-		} catch (LangDetectException e) {
-			return false;
-		}
-		return false;
+	public void parse(LineReader reader, RawTweetHandler handler) throws IOException {
+		reader.read(newLineHandler(handler));
 	}
 
 	/**
-	 * Filters tweets text from urls, user mentions and hashtags.
+	 * Creates line handler, which parses lines into one reused
+	 * {@code RawTweet} and passes English tweets to the given handler. The
+	 * line handler must be used by one thread only.
 	 * 
-	 * @param rawTweet
-	 *            tweet which text is filtered
-	 * @return filtered text
+	 * @param handler
+	 *            handler of English tweets
+	 * @return handler of stream lines
 	 */
-	private String filterText(RawTweet rawTweet) {
-		String filteredText = rawTweet.getText();
+	public LineHandler newLineHandler(final RawTweetHandler handler) {
+		return new LineHandler() {
+			/** Tweet reused for all lines */
+			private RawTweet rawTweet = new RawTweet();
 
-		for (String url : rawTweet.getEntities().getUrls()) {
-			filteredText = filteredText.replace(url, "");
+			@Override
+			public void handle(String line) {
+				if (parseLine(line, rawTweet))
+					handler.handle(rawTweet);
+			}
+		};
+	}
+
+	/**
+	 * Parses one line of twitter stream
+	 * 
+	 * @param line
+	 *            line with tweet in Json format
+	 * @return raw tweet or {@code null} if the line is a deletion notice, a
+	 *         duplicate or tweet isn't in English
+	 */
+	public RawTweet parseLine(String line) {
+		RawTweet rawTweet = new RawTweet();
+		return parseLine(line, rawTweet) ? rawTweet : null;
+	}
+
+	/**
+	 * Parses one line of twitter stream into the given tweet
+	 * 
+	 * @param line
+	 *            line with tweet in Json format
+	 * @param rawTweet
+	 *            tweet to be filled, its previous contents is cleared
+	 * @return true if the line is an English tweet, false if it is a
+	 *         deletion notice, a duplicate or tweet isn't in English
+	 */
+	public boolean parseLine(String line, RawTweet rawTweet) {
+		PipelineMetrics metrics = PipelineMetrics.get();
+		if (line.startsWith("{\"delete\"")) {
+			metrics.recordDrop(PipelineMetrics.Drop.DELETED);
+			return false;
 		}
-		for (String user : rawTweet.getEntities().getUserMentions()) {
-			filteredText = filteredText.replace(user, "");
+		long time = metrics.startTimer();
+		extractors.get().extract(line, rawTweet);
+		time = metrics.stopTimer(PipelineMetrics.Stage.PARSE, time);
+		if (duplicateFilter != null) {
+			boolean duplicate = duplicateFilter.isDuplicate(rawTweet);
+			time = metrics.stopTimer(PipelineMetrics.Stage.DEDUP, time);
+			if (duplicate) {
+				metrics.recordDrop(PipelineMetrics.Drop.DUPLICATE);
+				return false;
+			}
 		}
-
-		for (String hashTag : rawTweet.getEntities().getHashtags()) {
-			filteredText = filteredText.replace(hashTag, "");
+		boolean english = languageFilter.isInEnglish(rawTweet);
+		metrics.stopTimer(PipelineMetrics.Stage.LANGUAGE, time);
+		if (!english) {
+			metrics.recordDrop(PipelineMetrics.Drop.NOT_ENGLISH);
+			return false;
 		}
-		filteredText = filteredText.replaceAll("\\p{Punct}|\\d", "");
-		return filteredText;
+		rawTweet.setLanguage("en");
+		return true;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,24 @@
+package words;
+
+/**
+ * The interface {@code BatchScorer} computes sentiments of a batch of texts
+ * given as ids of their tokens. Scoring whole batches of ids keeps the inner
+ * loop over plain int arrays and lets several scorers, for example with
+ * different lexicons, score the same batch one after another.
+ * 
+ */
+public interface BatchScorer {
+
+	/**
+	 * Scores all texts of the batch
+	 * 
+	 * @param batch
+	 *            ids of tokens of the texts
+	 * @param sentiments
+	 *            array, which receives sentiment of each text
+	 * @param arousals
+	 *            array, which receives arousal of each text, 0 if no token of
+	 *            the text has sentiment
+	 */
+	void score(TokenBatch batch, int[] sentiments, int[] arousals);
+}
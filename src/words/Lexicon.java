@@ -0,0 +1,313 @@
+package words;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * The class {@code Lexicon} is an immutable hash table from words (phrases) to
+ * their sentiments. Keys are kept in one array of characters and looked up
+ * directly in a character buffer, so lookups neither create strings nor box
+ * integers.
+ * <p>
+ * The whole table is laid out in one little-endian buffer, which may be written to a file
+ * and memory-mapped later with {@link #map(File)}. A mapped lexicon is ready
+ * as soon as the file is mapped and its pages are shared by all processes
+ * using the same file. The layout is:
+ * 
+ * <pre>
+ * int    magic, version, size, capacity, number of key characters
+ * int[]  slots       entry index plus one, 0 for empty slots (capacity)
+ * int[]  keyStart    start of the key of each entry in keyChars (size + 1)
+ * int[]  values      sentiments of entries (size)
+ * char[] keyChars    characters of all keys
+ * </pre>
+ * 
+ */
+public class Lexicon {
+
+	/** Magic number of the lexicon file */
+	private static final int MAGIC = 0x4C58434E;
+
+	/** Version of the lexicon file format */
+	private static final int VERSION = 1;
+
+	/** Size of the header in bytes */
+	private static final int HEADER_SIZE = 20;
+
+	/** Number of table slots per entry, at least */
+	private static final int LOAD_FACTOR_INVERSE = 2;
+
+	/** Buffer with the table */
+	private final ByteBuffer table;
+
+	/** Number of entries */
+	private final int size;
+
+	/** Mask selecting slot from a hash code */
+	private final int mask;
+
+	/** Offsets of the sections in {@link #table} */
+	private final int keyStartOffset, valuesOffset, keyCharsOffset;
+
+	/**
+	 * Builds lexicon from the mapping of words to their sentiments
+	 * 
+	 * @param wordsToSentiment
+	 *            mapping from words (phrases) to sentiments
+	 */
+	public Lexicon(Map<String, Integer> wordsToSentiment) {
+		this(build(wordsToSentiment));
+	}
+
+	/**
+	 * Creates lexicon over the table laid out in buffer
+	 * 
+	 * @param table
+	 *            buffer with the table
+	 * @throws IllegalArgumentException
+	 *             if the buffer doesn't contain a lexicon
+	 */
+	private Lexicon(ByteBuffer table) {
+		if (table.capacity() < HEADER_SIZE || table.getInt(0) != MAGIC || table.getInt(4) != VERSION)
+			throw new IllegalArgumentException("Not a lexicon of version " + VERSION);
+		this.table = table;
+		size = table.getInt(8);
+		int capacity = table.getInt(12);
+		mask = capacity - 1;
+		keyStartOffset = HEADER_SIZE + 4 * capacity;
+		valuesOffset = keyStartOffset + 4 * (size + 1);
+		keyCharsOffset = valuesOffset + 4 * size;
+		if ((long) keyCharsOffset + 2L * table.getInt(16) != table.capacity())
+			throw new IllegalArgumentException("Lexicon is truncated");
+	}
+
+	/**
+	 * Memory-maps lexicon file written by {@link #write(File)}
+	 * 
+	 * @param file
+	 *            lexicon file
+	 * @return lexicon backed by the file
+	 * @throws IOException
+	 *             if the file can't be read or isn't a lexicon
+	 */
+	public static Lexicon map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new Lexicon(buffer.order(ByteOrder.LITTLE_ENDIAN));
+		} catch (IllegalArgumentException e) {
+			throw new IOException(file + ": " + e.getMessage());
+		} finally {
+			// the mapping stays valid after the file is closed
+			raf.close();
+		}
+	}
+
+	/**
+	 * Checks whether the file is a compiled lexicon
+	 * 
+	 * @param file
+	 *            file to be checked
+	 * @return true if the file starts with lexicon magic number
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static boolean isCompiled(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			return raf.length() >= HEADER_SIZE && Integer.reverseBytes(raf.readInt()) == MAGIC;
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes the table to file, which can be memory-mapped later
+	 * 
+	 * @param file
+	 *            destination file
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public void write(File file) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		FileOutputStream out = new FileOutputStream(temp);
+		try {
+			ByteBuffer buffer = table.duplicate();
+			buffer.clear();
+			FileChannel channel = out.getChannel();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			out.close();
+		}
+		Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+				StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public String getKey(int entry) {
+		int start = keyStart(entry);
+		char[] key = new char[keyStart(entry + 1) - start];
+		for (int i = 0; i < key.length; i++) {
+			key[i] = keyChar(start + i);
+		}
+		return new String(key);
+	}
+
+	public int getValue(int entry) {
+		return table.getInt(valuesOffset + 4 * entry);
+	}
+
+	/**
+	 * Searches the word kept in the given part of character buffer
+	 * 
+	 * @param buffer
+	 *            buffer with characters of the word
+	 * @param offset
+	 *            index of the first character of the word
+	 * @param length
+	 *            length of the word
+	 * @return index of the entry or -1 if the word isn't in the lexicon
+	 */
+	public int find(char[] buffer, int offset, int length) {
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		int slot = spread(hash) & mask;
+		int entry;
+		while ((entry = slot(slot) - 1) >= 0) {
+			int start = keyStart(entry);
+			if (keyStart(entry + 1) - start == length && regionMatches(buffer, offset, start, length))
+				return entry;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Searches the phrase of two words separated with a space, without
+	 * building the phrase
+	 * 
+	 * @param buffer
+	 *            buffer with characters of both words
+	 * @param firstOffset
+	 *            index of the first character of the first word
+	 * @param firstLength
+	 *            length of the first word
+	 * @param secondOffset
+	 *            index of the first character of the second word
+	 * @param secondLength
+	 *            length of the second word
+	 * @return index of the entry or -1 if the phrase isn't in the lexicon
+	 */
+	public int find(char[] buffer, int firstOffset, int firstLength, int secondOffset, int secondLength) {
+		int hash = 0;
+		for (int i = firstOffset; i < firstOffset + firstLength; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		hash = 31 * hash + ' ';
+		for (int i = secondOffset; i < secondOffset + secondLength; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		int length = firstLength + 1 + secondLength;
+		int slot = spread(hash) & mask;
+		int entry;
+		while ((entry = slot(slot) - 1) >= 0) {
+			int start = keyStart(entry);
+			if (keyStart(entry + 1) - start == length && regionMatches(buffer, firstOffset, start, firstLength)
+					&& keyChar(start + firstLength) == ' '
+					&& regionMatches(buffer, secondOffset, start + firstLength + 1, secondLength))
+				return entry;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int slot(int slot) {
+		return table.getInt(HEADER_SIZE + 4 * slot);
+	}
+
+	private int keyStart(int entry) {
+		return table.getInt(keyStartOffset + 4 * entry);
+	}
+
+	private char keyChar(int index) {
+		return table.getChar(keyCharsOffset + 2 * index);
+	}
+
+	/**
+	 * Compares part of the buffer with part of the keys
+	 */
+	private boolean regionMatches(char[] buffer, int offset, int keyOffset, int length) {
+		for (int i = 0; i < length; i++) {
+			if (buffer[offset + i] != keyChar(keyOffset + i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Lays out hash table of the words in a buffer
+	 */
+	private static ByteBuffer build(Map<String, Integer> wordsToSentiment) {
+		int size = wordsToSentiment.size();
+		int capacity = Integer.highestOneBit(Math.max(1, size * LOAD_FACTOR_INVERSE - 1)) << 1;
+		int[] slots = new int[capacity];
+		int[] keyStart = new int[size + 1];
+		int[] values = new int[size];
+		int length = 0;
+		for (String key : wordsToSentiment.keySet()) {
+			length += key.length();
+		}
+		char[] keyChars = new char[length];
+
+		int entry = 0;
+		for (Entry<String, Integer> e : wordsToSentiment.entrySet()) {
+			String key = e.getKey();
+			key.getChars(0, key.length(), keyChars, keyStart[entry]);
+			keyStart[entry + 1] = keyStart[entry] + key.length();
+			values[entry] = e.getValue().intValue();
+			int slot = spread(key.hashCode()) & (capacity - 1);
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & (capacity - 1);
+			}
+			slots[slot] = entry + 1;
+			entry++;
+		}
+
+		ByteBuffer table = ByteBuffer.allocate(HEADER_SIZE + 4 * (capacity + 2 * size + 1) + 2 * length).order(
+				ByteOrder.LITTLE_ENDIAN);
+		table.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(capacity).putInt(length);
+		table.asIntBuffer().put(slots).put(keyStart).put(values);
+		table.position(HEADER_SIZE + 4 * (capacity + 2 * size + 1));
+		table.asCharBuffer().put(keyChars);
+		table.clear();
+		return table;
+	}
+
+	/**
+	 * Mixes higher bits of the hash code into lower ones, which select the
+	 * slot
+	 */
+	private static int spread(int hash) {
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		return hash ^ (hash >>> 13);
+	}
+}
@@ -0,0 +1,29 @@
+package words;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compiles text file with words(phrases)-sentiments pairs into binary
+ * {@link Lexicon}, which is memory-mapped by
+ * {@link WordsToSentimentBuilder#loadWordsSentiment(File)} instead of being
+ * parsed on every start.
+ * <p>
+ * Usage: {@code LexiconCompiler <words-sentiment-file> <lexicon-file>}
+ * 
+ */
+public class LexiconCompiler {
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: LexiconCompiler <words-sentiment-file> <lexicon-file>");
+			System.exit(1);
+		}
+		File source = new File(args[0]);
+		File target = new File(args[1]);
+		Lexicon lexicon = new Lexicon(WordsToSentimentBuilder.readWordsSentiment(source));
+		lexicon.write(target);
+		System.out.println("Compiled " + lexicon.size() + " entries into " + target + " (" + target.length()
+				+ " bytes)");
+	}
+}
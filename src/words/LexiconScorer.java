@@ -0,0 +1,139 @@
+package words;
+
+/**
+ * The class {@code LexiconScorer} scores batches of token ids with a lexicon
+ * taking tokens in pairs, which gives the same sentiments as
+ * {@link SentimentScorer#SentimentScorer(Lexicon)}.
+ * <p>
+ * Sentiments of all tokens of the interner are looked up once, when the
+ * scorer is created, and kept in an array indexed by id. Two-word phrases are
+ * kept in a small hash table keyed by both ids, which is probed only for
+ * tokens starting a phrase. So scoring a batch reads only int arrays and
+ * neither hashes nor compares characters for most tokens. The scorer is
+ * immutable and thread-safe.
+ * 
+ */
+public class LexiconScorer implements BatchScorer {
+
+	/** Lexicon with sentiments of words and phrases */
+	private final Lexicon lexicon;
+
+	/** Sentiment of each token id, 0 for tokens not in the lexicon */
+	private final int[] values;
+
+	/** Indicates for each token id whether it starts a two-word phrase */
+	private final boolean[] phraseStarts;
+
+	/** Keys of phrases, ids of both words, 0 for empty slots */
+	private final long[] phraseKeys;
+
+	/** Sentiments of phrases */
+	private final int[] phraseValues;
+
+	/** Mask selecting slot of a phrase */
+	private final int phraseMask;
+
+	/**
+	 * Creates scorer
+	 * 
+	 * @param lexicon
+	 *            lexicon with sentiments of words and phrases
+	 * @param interner
+	 *            interner giving ids to tokens of batches to be scored
+	 */
+	public LexiconScorer(Lexicon lexicon, TokenInterner interner) {
+		this.lexicon = lexicon;
+		values = new int[interner.size()];
+		phraseStarts = new boolean[interner.size()];
+		for (int id = 1; id < values.length; id++) {
+			char[] token = interner.getToken(id).toCharArray();
+			int entry = lexicon.find(token, 0, token.length);
+			values[id] = entry < 0 ? 0 : lexicon.getValue(entry);
+		}
+
+		int phrasesCount = 0;
+		for (int entry = 0; entry < lexicon.size(); entry++) {
+			if (lexicon.getKey(entry).indexOf(' ') >= 0)
+				phrasesCount++;
+		}
+		int slots = Integer.highestOneBit(Math.max(1, phrasesCount) * 4);
+		phraseKeys = new long[slots];
+		phraseValues = new int[slots];
+		phraseMask = slots - 1;
+		for (int entry = 0; entry < lexicon.size(); entry++) {
+			String key = lexicon.getKey(entry);
+			int space = key.indexOf(' ');
+			// longer phrases are never matched by pairs of tokens
+			if (space < 0 || key.indexOf(' ', space + 1) >= 0)
+				continue;
+			int first = interner.getId(key.substring(0, space));
+			int second = interner.getId(key.substring(space + 1));
+			if (first == TokenInterner.UNKNOWN || second == TokenInterner.UNKNOWN)
+				continue;
+			long phraseKey = (long) first << 32 | second;
+			int slot = slot(phraseKey);
+			while (phraseKeys[slot] != 0 && phraseKeys[slot] != phraseKey) {
+				slot = (slot + 1) & phraseMask;
+			}
+			phraseKeys[slot] = phraseKey;
+			phraseValues[slot] = lexicon.getValue(entry);
+			phraseStarts[first] = true;
+		}
+	}
+
+	public Lexicon getLexicon() {
+		return lexicon;
+	}
+
+	@Override
+	public void score(TokenBatch batch, int[] sentiments, int[] arousals) {
+		int[] tokens = batch.getTokens();
+		int[] offsets = batch.getOffsets();
+		int[] values = this.values;
+		boolean[] phraseStarts = this.phraseStarts;
+		for (int i = 0; i < batch.size(); i++) {
+			int end = offsets[i + 1];
+			int sentiment = 0, arousal = 0;
+			for (int t = offsets[i]; t < end; t += 2) {
+				int first = tokens[t];
+				int value = values[first];
+				sentiment += value;
+				arousal += Math.abs(value);
+				if (t + 1 == end)
+					break;
+				int second = tokens[t + 1];
+				if (phraseStarts[first]) {
+					value = findPhrase(first, second);
+					sentiment += value;
+					arousal += Math.abs(value);
+				}
+				value = values[second];
+				sentiment += value;
+				arousal += Math.abs(value);
+			}
+			sentiments[i] = sentiment;
+			arousals[i] = arousal;
+		}
+	}
+
+	/**
+	 * Returns sentiment of the phrase of two tokens or 0 if it isn't in the
+	 * lexicon
+	 */
+	private int findPhrase(int first, int second) {
+		long phraseKey = (long) first << 32 | second;
+		int slot = slot(phraseKey);
+		long key;
+		while ((key = phraseKeys[slot]) != 0) {
+			if (key == phraseKey)
+				return phraseValues[slot];
+			slot = (slot + 1) & phraseMask;
+		}
+		return 0;
+	}
+
+	private int slot(long phraseKey) {
+		long hash = phraseKey * 0x9E3779B97F4A7C15L;
+		return (int) (hash >>> 32) & phraseMask;
+	}
+}
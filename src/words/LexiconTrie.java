@@ -0,0 +1,190 @@
+package words;
+
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+/**
+ * The class {@code LexiconTrie} is a trie over normalized words and phrases of
+ * a {@link Lexicon}. Keys are normalized the same way as scored texts
+ * (punctuation and digits removed, letters lower-cased, words separated by one
+ * space), so phrases like "can't stand" match the normalized text "cant
+ * stand". Transitions are kept in one open-addressing table keyed by node and
+ * character, so walking the trie creates no objects.
+ * 
+ */
+public class LexiconTrie {
+
+	/** Root node of the trie */
+	public static final int ROOT = 0;
+
+	/** Lexicon, which the trie was built from */
+	private final Lexicon lexicon;
+
+	/** Transition keys: parent node in the high bits, character in the low */
+	private long[] transitionKeys;
+
+	/** Child nodes of transitions plus one, 0 for empty slots */
+	private int[] transitionChildren;
+
+	/** Number of transitions */
+	private int transitionsCount;
+
+	/** Sentiment of the key ending at the node */
+	private int[] values = new int[64];
+
+	/** Indicates whether some key ends at the node */
+	private boolean[] terminal = new boolean[64];
+
+	/** Indicates whether the key ending at the node was already normalized */
+	private boolean[] exact = new boolean[64];
+
+	/** Number of nodes */
+	private int nodesCount = 1;
+
+	/**
+	 * Builds trie from all entries of the lexicon
+	 * 
+	 * @param lexicon
+	 *            lexicon with sentiments of words and phrases
+	 */
+	public LexiconTrie(Lexicon lexicon) {
+		this.lexicon = lexicon;
+		int capacity = Integer.highestOneBit(Math.max(16, lexicon.size() * 16)) << 1;
+		transitionKeys = new long[capacity];
+		transitionChildren = new int[capacity];
+		for (int entry = 0; entry < lexicon.size(); entry++) {
+			add(lexicon.getKey(entry), lexicon.getValue(entry));
+		}
+	}
+
+	public Lexicon getLexicon() {
+		return lexicon;
+	}
+
+	public int getNodesCount() {
+		return nodesCount;
+	}
+
+	/**
+	 * Returns child of the node along the character
+	 * 
+	 * @param node
+	 *            parent node
+	 * @param c
+	 *            character of the transition
+	 * @return child node or -1 if there is no such transition
+	 */
+	public int next(int node, char c) {
+		long key = (long) node << 16 | c;
+		int mask = transitionKeys.length - 1;
+		int slot = spread(key) & mask;
+		int child;
+		while ((child = transitionChildren[slot]) != 0) {
+			if (transitionKeys[slot] == key)
+				return child - 1;
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks whether some word or phrase ends at the node
+	 */
+	public boolean isTerminal(int node) {
+		return terminal[node];
+	}
+
+	/**
+	 * Returns sentiment of the word or phrase ending at the node
+	 */
+	public int getValue(int node) {
+		return values[node];
+	}
+
+	/**
+	 * Adds normalized key to the trie. If several keys have the same normalized
+	 * form, the one which didn't change on normalization wins, otherwise the
+	 * first one.
+	 */
+	private void add(String key, int value) {
+		String normalized = normalize(key);
+		if (normalized.isEmpty())
+			return;
+		int node = ROOT;
+		for (int i = 0; i < normalized.length(); i++) {
+			int child = next(node, normalized.charAt(i));
+			node = child >= 0 ? child : addTransition(node, normalized.charAt(i));
+		}
+		boolean isExact = normalized.equals(key);
+		if (!terminal[node] || isExact && !exact[node]) {
+			terminal[node] = true;
+			exact[node] = isExact;
+			values[node] = value;
+		}
+	}
+
+	/**
+	 * Creates new node and transition to it
+	 */
+	private int addTransition(int node, char c) {
+		if (nodesCount == values.length) {
+			int length = values.length * 2;
+			values = Arrays.copyOf(values, length);
+			terminal = Arrays.copyOf(terminal, length);
+			exact = Arrays.copyOf(exact, length);
+		}
+		if (2 * (transitionsCount + 1) > transitionKeys.length)
+			rehash();
+		int child = nodesCount++;
+		long key = (long) node << 16 | c;
+		int mask = transitionKeys.length - 1;
+		int slot = spread(key) & mask;
+		while (transitionChildren[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		transitionKeys[slot] = key;
+		transitionChildren[slot] = child + 1;
+		transitionsCount++;
+		return child;
+	}
+
+	/**
+	 * Doubles the table of transitions
+	 */
+	private void rehash() {
+		long[] keys = transitionKeys;
+		int[] children = transitionChildren;
+		transitionKeys = new long[keys.length * 2];
+		transitionChildren = new int[children.length * 2];
+		int mask = transitionKeys.length - 1;
+		for (int i = 0; i < keys.length; i++) {
+			if (children[i] == 0)
+				continue;
+			int slot = spread(keys[i]) & mask;
+			while (transitionChildren[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			transitionKeys[slot] = keys[i];
+			transitionChildren[slot] = children[i];
+		}
+	}
+
+	/**
+	 * Normalizes key the same way as texts are normalized before scoring
+	 */
+	private static String normalize(String key) {
+		StringTokenizer tokenizer = new StringTokenizer(key.replaceAll("\\p{Punct}|\\d", "").toLowerCase());
+		StringBuilder sb = new StringBuilder();
+		while (tokenizer.hasMoreTokens()) {
+			if (sb.length() > 0)
+				sb.append(' ');
+			sb.append(tokenizer.nextToken());
+		}
+		return sb.toString();
+	}
+
+	private static int spread(long key) {
+		key *= 0x9E3779B97F4A7C15L;
+		return (int) (key ^ (key >>> 32));
+	}
+}
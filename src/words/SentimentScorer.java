@@ -0,0 +1,245 @@
+package words;
+
+/**
+ * The class {@code SentimentScorer} computes sentiment of a text in a single
+ * pass over its characters. The text is normalized into a reusable buffer
+ * (punctuation and digits removed, letters lower-cased), split into tokens by
+ * whitespace and the tokens are looked up in place, so scoring creates no
+ * objects.
+ * <p>
+ * A scorer created for {@link Lexicon} takes tokens in pairs: both tokens of a
+ * pair and the phrase they form are scored. A scorer created for
+ * {@link LexiconTrie} matches words and phrases of any length from left to
+ * right: the longest word or phrase starting at a token is scored and the
+ * next match starts after its tokens, so "not good" scores as the phrase only.
+ * A scorer isn't thread-safe, each thread should use its own one.
+ * 
+ */
+public class SentimentScorer {
+
+	/** Lexicon with sentiments of words and phrases */
+	private final Lexicon lexicon;
+
+	/** Trie over the lexicon or {@code null} if tokens are scored in pairs */
+	private final LexiconTrie trie;
+
+	/** Buffer with normalized text */
+	private char[] buffer = new char[256];
+
+	/** Sum of absolute sentiments of the tokens of the last scored text */
+	private int arousal;
+
+	/**
+	 * Creates scorer, which scores tokens in pairs
+	 * 
+	 * @param lexicon
+	 *            lexicon with sentiments of words and phrases
+	 */
+	public SentimentScorer(Lexicon lexicon) {
+		this.lexicon = lexicon;
+		this.trie = null;
+	}
+
+	/**
+	 * Creates scorer, which matches the longest words and phrases
+	 * 
+	 * @param trie
+	 *            trie over lexicon with sentiments of words and phrases
+	 */
+	public SentimentScorer(LexiconTrie trie) {
+		this.lexicon = trie.getLexicon();
+		this.trie = trie;
+	}
+
+	public Lexicon getLexicon() {
+		return lexicon;
+	}
+
+	public boolean isPhraseMatching() {
+		return trie != null;
+	}
+
+	/**
+	 * Returns arousal of the last scored text, that is the sum of absolute
+	 * sentiments of its tokens. Zero arousal means that no token of the text
+	 * has sentiment.
+	 * 
+	 * @return arousal of the last scored text
+	 */
+	public int getArousal() {
+		return arousal;
+	}
+
+	/**
+	 * Calculates sentiment of the given string as a sum of sentiment scores of
+	 * tokens in the string
+	 * 
+	 * @param s
+	 *            string for which sentiment score is computed
+	 * @return sentiment score
+	 */
+	public int score(String s) {
+		int length = normalize(s);
+		arousal = 0;
+		return trie == null ? scorePairs(buffer, length) : scorePhrases(buffer, length);
+	}
+
+	/**
+	 * Scores tokens in pairs looking up both tokens and the phrase they form
+	 */
+	private int scorePairs(char[] buffer, int length) {
+		int sentiment = 0;
+		int position = 0;
+		while (true) {
+			int firstStart = skipWhitespace(buffer, position, length);
+			if (firstStart == length)
+				break;
+			int firstEnd = skipToken(buffer, firstStart, length);
+			sentiment += scoreEntry(lexicon.find(buffer, firstStart, firstEnd - firstStart));
+
+			int secondStart = skipWhitespace(buffer, firstEnd, length);
+			if (secondStart == length)
+				break;
+			int secondEnd = skipToken(buffer, secondStart, length);
+			sentiment += scoreEntry(lexicon.find(buffer, firstStart, firstEnd - firstStart, secondStart,
+					secondEnd - secondStart));
+			sentiment += scoreEntry(lexicon.find(buffer, secondStart, secondEnd - secondStart));
+			position = secondEnd;
+		}
+		return sentiment;
+	}
+
+	/**
+	 * Scores the longest word or phrase, which starts at the token, walking the
+	 * trie token by token until there is no transition, and continues after the
+	 * matched tokens, so that words of a matched phrase aren't scored again
+	 */
+	private int scorePhrases(char[] buffer, int length) {
+		int sentiment = 0;
+		int start = skipWhitespace(buffer, 0, length);
+		while (start < length) {
+			int node = LexiconTrie.ROOT;
+			int tokenStart = start, tokenEnd = skipToken(buffer, start, length);
+			int matchEnd = -1, matchValue = 0;
+			walk: while (true) {
+				for (int i = tokenStart; i < tokenEnd; i++) {
+					if ((node = trie.next(node, buffer[i])) < 0)
+						break walk;
+				}
+				if (trie.isTerminal(node)) {
+					matchEnd = tokenEnd;
+					matchValue = trie.getValue(node);
+				}
+				tokenStart = skipWhitespace(buffer, tokenEnd, length);
+				if (tokenStart == length || (node = trie.next(node, ' ')) < 0)
+					break;
+				tokenEnd = skipToken(buffer, tokenStart, length);
+			}
+			if (matchEnd >= 0) {
+				sentiment += matchValue;
+				arousal += Math.abs(matchValue);
+			} else {
+				matchEnd = skipToken(buffer, start, length);
+			}
+			start = skipWhitespace(buffer, matchEnd, length);
+		}
+		return sentiment;
+	}
+
+	/**
+	 * Returns sentiment of the lexicon entry and accumulates arousal
+	 */
+	private int scoreEntry(int entry) {
+		if (entry < 0)
+			return 0;
+		int sentiment = lexicon.getValue(entry);
+		arousal += Math.abs(sentiment);
+		return sentiment;
+	}
+
+	/**
+	 * Normalizes the string like the scorer does before looking tokens up:
+	 * removes ASCII punctuation and digits and converts letters to lower case
+	 * 
+	 * @param s
+	 *            string to be normalized
+	 * @return normalized string, whose tokens are separated by whitespace
+	 */
+	public static String normalizeText(String s) {
+		char[] buffer = new char[2 * s.length()];
+		return new String(buffer, 0, normalize(s, buffer));
+	}
+
+	/**
+	 * Copies the string into buffer removing ASCII punctuation and digits and
+	 * converting letters to lower case, which is the same as
+	 * {@code s.replaceAll("\\p{Punct}|\\d", "").toLowerCase()}
+	 * 
+	 * @param s
+	 *            string to be normalized
+	 * @return length of the normalized text in buffer
+	 */
+	private int normalize(String s) {
+		// lower case of a character takes at most two characters
+		if (buffer.length < 2 * s.length())
+			buffer = new char[2 * s.length()];
+		return normalize(s, buffer);
+	}
+
+	/**
+	 * Normalizes the string into the buffer, which must be at least twice as
+	 * long as the string
+	 */
+	private static int normalize(String s, char[] buffer) {
+		int n = s.length();
+		int length = 0;
+		for (int i = 0; i < n; i++) {
+			char c = s.charAt(i);
+			if (c < 128) {
+				if (c >= 'A' && c <= 'Z')
+					buffer[length++] = (char) (c + ('a' - 'A'));
+				else if (!isPunctuationOrDigit(c))
+					buffer[length++] = c;
+			} else if (c == '\u0130') {
+				// capital I with dot above is lower-cased into two characters
+				buffer[length++] = 'i';
+				buffer[length++] = '\u0307';
+			} else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toLowerCase(Character.toCodePoint(c, s.charAt(++i)));
+				length += Character.toChars(codePoint, buffer, length);
+			} else {
+				buffer[length++] = Character.toLowerCase(c);
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Checks whether the ASCII character matches {@code \p{Punct}|\d}
+	 */
+	private static boolean isPunctuationOrDigit(char c) {
+		return c >= '!' && c <= '/' || c >= '0' && c <= '9' || c >= ':' && c <= '@' || c >= '[' && c <= '`'
+				|| c >= '{' && c <= '~';
+	}
+
+	/**
+	 * Checks whether the character is a delimiter of {@code StringTokenizer}
+	 */
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+	}
+
+	private static int skipWhitespace(char[] buffer, int position, int length) {
+		while (position < length && isWhitespace(buffer[position])) {
+			position++;
+		}
+		return position;
+	}
+
+	private static int skipToken(char[] buffer, int position, int length) {
+		while (position < length && !isWhitespace(buffer[position])) {
+			position++;
+		}
+		return position;
+	}
+}
@@ -0,0 +1,126 @@
+package words;
+
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+/**
+ * The class {@code TokenBatch} keeps token ids of a batch of texts in one
+ * array, the tokens of the i-th text being between {@code getOffsets()[i]}
+ * and {@code getOffsets()[i + 1]}. A batch is reused: it is filled, scored by
+ * {@link BatchScorer}s and cleared. A batch isn't thread-safe.
+ * 
+ */
+public class TokenBatch {
+
+	/** Interner giving ids to tokens of texts */
+	private final TokenInterner interner;
+
+	/** Largest number of texts */
+	private final int capacity;
+
+	/** Token ids of all texts */
+	private int[] tokens = new int[1024];
+
+	/** Index of the first token of each text and the end of the last one */
+	private final int[] offsets;
+
+	/** Number of texts */
+	private int size;
+
+	/** Number of tokens of all texts including the one being added */
+	private int end;
+
+	/**
+	 * Creates empty batch
+	 * 
+	 * @param interner
+	 *            interner giving ids to tokens of texts
+	 * @param capacity
+	 *            largest number of texts
+	 */
+	public TokenBatch(TokenInterner interner, int capacity) {
+		this.interner = interner;
+		this.capacity = capacity;
+		offsets = new int[capacity + 1];
+	}
+
+	/**
+	 * Adds text, which is normalized and split into tokens like
+	 * {@link SentimentScorer} does
+	 * 
+	 * @param text
+	 *            text or {@code null} for a text without tokens
+	 */
+	public void add(String text) {
+		if (text != null) {
+			StringTokenizer tokenizer = new StringTokenizer(SentimentScorer.normalizeText(text));
+			while (tokenizer.hasMoreTokens()) {
+				addToken(interner.getId(tokenizer.nextToken()));
+			}
+		}
+		endText();
+	}
+
+	/**
+	 * Adds token to the text being added
+	 * 
+	 * @param id
+	 *            id of the token given by the interner of the batch
+	 */
+	public void addToken(int id) {
+		if (end == tokens.length)
+			tokens = Arrays.copyOf(tokens, 2 * tokens.length);
+		tokens[end++] = id;
+	}
+
+	/**
+	 * Ends the text being added, whose tokens were added by
+	 * {@link #addToken(int)}
+	 */
+	public void endText() {
+		if (size == capacity)
+			throw new IllegalStateException("Batch is full");
+		offsets[++size] = end;
+	}
+
+	public boolean isFull() {
+		return size == capacity;
+	}
+
+	public void clear() {
+		size = 0;
+		end = 0;
+	}
+
+	/**
+	 * Returns number of texts
+	 * 
+	 * @return number of texts
+	 */
+	public int size() {
+		return size;
+	}
+
+	public TokenInterner getInterner() {
+		return interner;
+	}
+
+	/**
+	 * Returns token ids of all texts, the array may be longer than the tokens
+	 * 
+	 * @return token ids
+	 */
+	public int[] getTokens() {
+		return tokens;
+	}
+
+	/**
+	 * Returns array, whose elements {@code i} and {@code i + 1} are the start
+	 * and the end of tokens of the i-th text
+	 * 
+	 * @return offsets of texts
+	 */
+	public int[] getOffsets() {
+		return offsets;
+	}
+}
@@ -0,0 +1,96 @@
+package words;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The class {@code TokenInterner} maps tokens to int ids, so that texts can be
+ * scored over arrays of ids by {@link BatchScorer}. The set of tokens is fixed
+ * when the interner is created, tokens outside of it get
+ * {@link #UNKNOWN} id. An interner built from lexicons knows only words of
+ * their keys, so its size doesn't grow with the stream. The interner is
+ * immutable and thread-safe.
+ * 
+ */
+public class TokenInterner {
+
+	/** Id of all tokens the interner doesn't know */
+	public static final int UNKNOWN = 0;
+
+	/** Tokens in the order of ids, the first one stands for unknown tokens */
+	private final String[] tokens;
+
+	/** Mapping from token to its id */
+	private final Map<String, Integer> ids;
+
+	/**
+	 * Creates interner, which gives ids from 1 to tokens in their order
+	 * 
+	 * @param tokens
+	 *            distinct tokens
+	 */
+	public TokenInterner(String[] tokens) {
+		this.tokens = new String[tokens.length + 1];
+		this.tokens[UNKNOWN] = "";
+		System.arraycopy(tokens, 0, this.tokens, 1, tokens.length);
+		ids = new HashMap<String, Integer>(2 * this.tokens.length);
+		for (int id = 1; id < this.tokens.length; id++) {
+			ids.put(this.tokens[id], id);
+		}
+	}
+
+	/**
+	 * Creates interner, which knows every word of keys of the lexicons
+	 * 
+	 * @param lexicons
+	 *            lexicons with sentiments of words and phrases
+	 * @return interner
+	 */
+	public static TokenInterner forLexicons(List<Lexicon> lexicons) {
+		Map<String, Boolean> words = new HashMap<String, Boolean>();
+		List<String> tokens = new ArrayList<String>();
+		for (Lexicon lexicon : lexicons) {
+			for (int entry = 0; entry < lexicon.size(); entry++) {
+				for (String word : lexicon.getKey(entry).split(" ")) {
+					if (!word.isEmpty() && words.put(word, Boolean.TRUE) == null)
+						tokens.add(word);
+				}
+			}
+		}
+		return new TokenInterner(tokens.toArray(new String[tokens.size()]));
+	}
+
+	/**
+	 * Returns id of the token
+	 * 
+	 * @param token
+	 *            token
+	 * @return id or {@link #UNKNOWN} if the interner doesn't know the token
+	 */
+	public int getId(String token) {
+		Integer id = ids.get(token);
+		return id != null ? id : UNKNOWN;
+	}
+
+	/**
+	 * Returns token of the id
+	 * 
+	 * @param id
+	 *            id of a token
+	 * @return token, empty for {@link #UNKNOWN}
+	 */
+	public String getToken(int id) {
+		return tokens[id];
+	}
+
+	/**
+	 * Returns number of ids including {@link #UNKNOWN}
+	 * 
+	 * @return number of ids
+	 */
+	public int size() {
+		return tokens.length;
+	}
+}
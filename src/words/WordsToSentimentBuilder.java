@@ -2,6 +2,7 @@ package words;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Scanner;
@@ -17,17 +18,63 @@ public class WordsToSentimentBuilder {
 	/** Mapping from words to their sentiments */
 	private static Map<String, Integer> wordsToSentiment;
 
+	/** Lexicon built from {@link #wordsToSentiment} */
+	private static Lexicon lexicon;
+
+	/** Trie over {@link #lexicon}, which is built on demand */
+	private static volatile LexiconTrie lexiconTrie;
+
 	/**
-	 * Reads file with words(phrases)-sentiments pairs and creates the
-	 * corresponding map
+	 * Loads words(phrases)-sentiments pairs. Text files are read and the
+	 * corresponding map and lexicon are created, while lexicons compiled by
+	 * {@link LexiconCompiler} are memory-mapped and ready at once.
 	 * 
 	 * @param wordsSentimentFile
 	 *            file to be read
 	 * @throws FileNotFoundException
 	 *             if the file can't be found
+	 * @throws IOException
+	 *             if the file can't be read
+	 */
+	public static void loadWordsSentiment(File wordsSentimentFile) throws IOException {
+		if (Lexicon.isCompiled(wordsSentimentFile)) {
+			lexicon = Lexicon.map(wordsSentimentFile);
+			wordsToSentiment = null;
+		} else {
+			wordsToSentiment = readWordsSentiment(wordsSentimentFile);
+			lexicon = new Lexicon(wordsToSentiment);
+		}
+		lexiconTrie = null;
+	}
+
+	/**
+	 * Reads lexicon from a text file or memory-maps a compiled one without
+	 * making it the loaded lexicon
+	 * 
+	 * @param wordsSentimentFile
+	 *            file to be read
+	 * @return lexicon
+	 * @throws IOException
+	 *             if the file can't be read
 	 */
-	public static void loadWordsSentiment(File wordsSentimentFile) throws FileNotFoundException {
-		wordsToSentiment = new HashMap<String, Integer>();
+	public static Lexicon readLexicon(File wordsSentimentFile) throws IOException {
+		if (Lexicon.isCompiled(wordsSentimentFile))
+			return Lexicon.map(wordsSentimentFile);
+		return new Lexicon(readWordsSentiment(wordsSentimentFile));
+	}
+
+	/**
+	 * Reads text file with words(phrases)-sentiments pairs, one pair per line
+	 * with sentiment being the last token, and creates the corresponding map
+	 * 
+	 * @param wordsSentimentFile
+	 *            file to be read
+	 * @return mapping from words to their sentiments
+	 * @throws FileNotFoundException
+	 *             if the file can't be found
+	 */
+	public static Map<String, Integer> readWordsSentiment(File wordsSentimentFile) throws FileNotFoundException {
+		Map<String, Integer> wordsToSentiment = new HashMap<String, Integer>();
 		Scanner scn = null;
 		scn = new Scanner(wordsSentimentFile);
 		while (scn.hasNext()) {
@@ -43,13 +90,44 @@ public class WordsToSentimentBuilder {
 			wordsToSentiment.put(sb.toString(), number);
 		}
 		scn.close();
+		return wordsToSentiment;
 	}
 
-	public static Map<String, Integer> getWordsSentimentMap() {
+	/**
+	 * Returns mapping from words to their sentiments. For a compiled lexicon
+	 * the map is built on the first call.
+	 * 
+	 * @return mapping from words to their sentiments
+	 */
+	public static synchronized Map<String, Integer> getWordsSentimentMap() {
+		Lexicon lexicon = getLexicon();
 		if (wordsToSentiment == null) {
-			throw new IllegalStateException("File with words was not loaded!");
+			wordsToSentiment = new HashMap<String, Integer>();
+			for (int entry = 0; entry < lexicon.size(); entry++) {
+				wordsToSentiment.put(lexicon.getKey(entry), lexicon.getValue(entry));
+			}
 		}
 		return wordsToSentiment;
 	}
 
+	public static Lexicon getLexicon() {
+		if (lexicon == null) {
+			throw new IllegalStateException("File with words was not loaded!");
+		}
+		return lexicon;
+	}
+
+	/**
+	 * Returns trie over the loaded lexicon, building it on the first call
+	 * 
+	 * @return trie for matching phrases of any length
+	 */
+	public static synchronized LexiconTrie getLexiconTrie() {
+		Lexicon lexicon = getLexicon();
+		if (lexiconTrie == null || lexiconTrie.getLexicon() != lexicon) {
+			lexiconTrie = new LexiconTrie(lexicon);
+		}
+		return lexiconTrie;
+	}
+
 }
@@ -0,0 +1,76 @@
+package bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import tweets.DuplicateFilter;
+import tweets.RawTweet;
+
+/**
+ * Checks near-duplicate detection of {@link DuplicateFilter} on random texts,
+ * whose words follow Zipf's law like words of tweets. For each text length
+ * unrelated texts are checked, and every hundredth text is followed by its
+ * copy with a word added. The rate of unrelated texts taken for duplicates
+ * and the rate of recognized copies are printed, and the check fails if the
+ * former exceeds the limit.
+ * <p>
+ * Usage: {@code DuplicateFilterCheck [texts] [vocabulary]}
+ * 
+ */
+public class DuplicateFilterCheck {
+
+	/** Numbers of words of checked texts */
+	private static final int[] LENGTHS = { 6, 10, 12, 20 };
+
+	/** Largest acceptable rate of unrelated texts taken for duplicates */
+	private static final double FALSE_RATE_LIMIT = 0.001;
+
+	public static void main(String[] args) {
+		int textsCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+		int vocabulary = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+
+		double[] distribution = new double[vocabulary];
+		double sum = 0;
+		for (int i = 0; i < vocabulary; i++) {
+			sum += 1.0 / (i + 1);
+			distribution[i] = sum;
+		}
+		for (int i = 0; i < vocabulary; i++) {
+			distribution[i] /= sum;
+		}
+
+		boolean failed = false;
+		for (int length : LENGTHS) {
+			DuplicateFilter filter = new DuplicateFilter(DuplicateFilter.Scope.GLOBAL, 3600000L, 64L << 20, true);
+			Random random = new Random(length);
+			RawTweet tweet = new RawTweet();
+			tweet.setTimestampMillis(1);
+			int falseCount = 0, copiesCount = 0, recognizedCount = 0;
+			StringBuilder text = new StringBuilder();
+			for (int i = 0; i < textsCount; i++) {
+				text.setLength(0);
+				for (int j = 0; j < length; j++) {
+					int word = Arrays.binarySearch(distribution, random.nextDouble());
+					text.append('w').append(word < 0 ? -word - 1 : word).append(' ');
+				}
+				tweet.setText(text.toString());
+				if (filter.isDuplicate(tweet))
+					falseCount++;
+				if (i % 100 == 0) {
+					tweet.setText(text.append("extra").toString());
+					copiesCount++;
+					if (filter.isDuplicate(tweet))
+						recognizedCount++;
+				}
+			}
+			double falseRate = (double) falseCount / textsCount;
+			System.out.printf("%2d words: %.3f%% false duplicates, %.1f%% copies recognized%n", length,
+					100 * falseRate, 100.0 * recognizedCount / copiesCount);
+			failed |= falseRate > FALSE_RATE_LIMIT;
+		}
+		if (failed) {
+			System.err.printf("False duplicates exceed %.1f%%%n", 100 * FALSE_RATE_LIMIT);
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures throughput and latency of a running
+ * {@link runner.SentimentServer}. Several client threads send a mix of
+ * queries to all endpoints for the given time and latency percentiles of all
+ * requests are printed at the end.
+ * <p>
+ * Usage: {@code ServerLoadTest [url] [threads] [seconds]}
+ * 
+ */
+public class ServerLoadTest {
+
+	/** Abbreviations used in state queries */
+	private static final String[] STATES = { "NH", "CA", "NY", "TX", "FL", "WA", "DE", "XX" };
+
+	/** Texts used in score queries */
+	private static final String[] TEXTS = { "what a happy day", "this is bad, really bad",
+			"no words here", "love it :)" };
+
+	public static void main(String[] args) throws Exception {
+		final String base = args.length > 0 ? args[0] : "http://localhost:8080";
+		int threadsCount = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+		final long deadline = System.nanoTime() + seconds * 1000000000L;
+		final AtomicLong errors = new AtomicLong();
+		final long[][] latencies = new long[threadsCount][];
+		Thread[] clients = new Thread[threadsCount];
+		for (int t = 0; t < threadsCount; t++) {
+			final int client = t;
+			clients[t] = new Thread("load-client-" + t) {
+				@Override
+				public void run() {
+					Random random = new Random(client);
+					long[] measured = new long[1 << 16];
+					int count = 0;
+					while (System.nanoTime() < deadline) {
+						String path = nextPath(random);
+						long start = System.nanoTime();
+						try {
+							request(base + path);
+						} catch (IOException e) {
+							errors.incrementAndGet();
+						}
+						if (count == measured.length)
+							measured = Arrays.copyOf(measured, 2 * count);
+						measured[count++] = System.nanoTime() - start;
+					}
+					latencies[client] = Arrays.copyOf(measured, count);
+				}
+			};
+			clients[t].start();
+		}
+		int total = 0;
+		for (int t = 0; t < threadsCount; t++) {
+			clients[t].join();
+			total += latencies[t].length;
+		}
+		long[] all = new long[total];
+		int offset = 0;
+		for (long[] measured : latencies) {
+			System.arraycopy(measured, 0, all, offset, measured.length);
+			offset += measured.length;
+		}
+		Arrays.sort(all);
+		System.out.printf("%d requests in %d s (%.0f/s), %d errors%n", total, seconds, (double) total / seconds,
+				errors.get());
+		if (total > 0) {
+			System.out.printf("latency us: p50 %d, p90 %d, p99 %d, p99.9 %d, max %d%n", percentile(all, 0.5),
+					percentile(all, 0.9), percentile(all, 0.99), percentile(all, 0.999), all[total - 1] / 1000);
+		}
+	}
+
+	private static String nextPath(Random random) {
+		switch (random.nextInt(4)) {
+		case 0:
+			return "/happiest";
+		case 1:
+			return "/ranking";
+		case 2:
+			return "/state?name=" + STATES[random.nextInt(STATES.length)];
+		default:
+			try {
+				return "/score?text=" + URLEncoder.encode(TEXTS[random.nextInt(TEXTS.length)], "UTF-8");
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+
+	/**
+	 * Sends GET request and reads the whole response. Client errors, such as
+	 * unknown state, are valid responses.
+	 */
+	private static void request(String url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+		int status = connection.getResponseCode();
+		if (status >= 500)
+			throw new IOException("Status " + status);
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		if (in != null) {
+			byte[] buffer = new byte[4096];
+			while (in.read(buffer) != -1) {
+				// drain the response so the connection is reused
+			}
+			in.close();
+		}
+	}
+
+	private static long percentile(long[] sorted, double fraction) {
+		return sorted[Math.min(sorted.length - 1, (int) (fraction * sorted.length))] / 1000;
+	}
+}
@@ -0,0 +1,224 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import states.State;
+
+/**
+ * Generates twitter stream lines, which resemble the streaming API output:
+ * deletion notices, English tweets tagged and untagged by Twitter, tweets in
+ * other Latin and non-Latin languages, located by coordinates, by place or by
+ * user's profile location, or not located at all. The same seed always gives
+ * the same stream, so benchmark results are reproducible without access to
+ * Twitter.
+ * <p>
+ * Usage: {@code SyntheticTweetGenerator <output-file> [tweets] [seed]}
+ * 
+ */
+public class SyntheticTweetGenerator {
+
+	/** English words with sentiment and without it */
+	private static final String[] ENGLISH_WORDS = { "happy", "good", "love", "great", "awesome", "fun", "nice",
+			"best", "thanks", "win", "bad", "sad", "hate", "angry", "worst", "terrible", "fail", "sick",
+			"tired", "bored", "the", "and", "is", "you", "my", "to", "of", "it", "this", "that", "day", "today",
+			"night", "time", "work", "home", "game", "music", "people", "coffee", "weather", "school", "just",
+			"now", "going", "want", "need", "know", "really", "so", "not", "no", "does not work", "cool stuff" };
+
+	/** Words of other languages written in Latin script */
+	private static final String[] FOREIGN_WORDS = { "hola", "que", "por", "para", "muy", "bien", "gracias",
+			"obrigado", "voc\u00ea", "n\u00e3o", "est", "une", "pour", "avec", "mais", "sehr", "und", "nicht",
+			"aber", "bardzo", "jest", "nie" };
+
+	/** Words written in non-Latin scripts */
+	private static final String[] NON_LATIN_WORDS = { "\u043f\u0440\u0438\u0432\u0435\u0442",
+			"\u0441\u043f\u0430\u0441\u0438\u0431\u043e", "\u0445\u043e\u0440\u043e\u0448\u043e",
+			"\u3053\u3093\u306b\u3061\u306f", "\u3042\u308a\u304c\u3068\u3046", "\u4eca\u65e5",
+			"\u0645\u0631\u062d\u0628\u0627", "\u0634\u0643\u0631\u0627",
+			"\uc548\ub155\ud558\uc138\uc694", "\uac10\uc0ac\ud569\ub2c8\ub2e4" };
+
+	/** Cities used in places and user locations */
+	private static final String[] CITIES = { "Los Angeles, CA", "New York, NY", "Chicago, IL", "Houston, TX",
+			"Phoenix, AZ", "Seattle, WA", "Miami, FL", "Boston, MA", "Denver, CO", "Manchester, NH",
+			"Wilmington, DE", "London, UK", "Paris", "somewhere", "the moon", "Toronto, Canada" };
+
+	/** Bounding box of the contiguous states */
+	private static final double MIN_LAT = 24.5, MAX_LAT = 49.5, MIN_LNG = -125, MAX_LNG = -66.5;
+
+	/** Format of the created_at field */
+	private final SimpleDateFormat dateFormat;
+
+	/** Source of randomness */
+	private final Random random;
+
+	/** Defined states */
+	private final State[] states;
+
+	/** Id and time of the next tweet */
+	private long id;
+	private long timeMillis = 1400000000000L;
+
+	/**
+	 * Creates generator
+	 * 
+	 * @param seed
+	 *            seed, which determines the stream
+	 */
+	public SyntheticTweetGenerator(long seed) {
+		random = new Random(seed);
+		dateFormat = new SimpleDateFormat("EEE MMM dd HH:mm:ss Z yyyy", Locale.US);
+		dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		State[] all = State.values();
+		states = new State[all.length - 1];
+		int count = 0;
+		for (State state : all) {
+			if (state != State.Undefined)
+				states[count++] = state;
+		}
+	}
+
+	/**
+	 * Generates the next line of the stream
+	 * 
+	 * @return line in JSON format without line terminator
+	 */
+	public String nextLine() {
+		id++;
+		timeMillis += random.nextInt(50);
+		if (random.nextInt(10) == 0)
+			return "{\"delete\":{\"status\":{\"id\":" + random.nextInt(1000000) + ",\"id_str\":\""
+					+ random.nextInt(1000000) + "\",\"user_id\":" + random.nextInt(100000) + "}}}";
+
+		String text;
+		String lang;
+		int kind = random.nextInt(100);
+		if (kind < 55) {
+			text = sentence(ENGLISH_WORDS);
+			lang = "\"en\"";
+		} else if (kind < 80) {
+			text = sentence(ENGLISH_WORDS);
+			lang = "null";
+		} else if (kind < 92) {
+			text = sentence(FOREIGN_WORDS);
+			lang = random.nextBoolean() ? "\"es\"" : "null";
+		} else {
+			text = sentence(NON_LATIN_WORDS);
+			lang = "null";
+		}
+
+		String coordinates = "null";
+		String place = "null";
+		String location = "null";
+		int located = random.nextInt(100);
+		if (located < 25) {
+			double lat = MIN_LAT + random.nextDouble() * (MAX_LAT - MIN_LAT);
+			double lng = MIN_LNG + random.nextDouble() * (MAX_LNG - MIN_LNG);
+			coordinates = "{\"type\":\"Point\",\"coordinates\":[" + lng + "," + lat + "]}";
+		} else if (located < 40) {
+			place = "{\"full_name\":\"" + CITIES[random.nextInt(CITIES.length)] + "\",\"country_code\":\"US\"}";
+		}
+		if (located >= 25 && random.nextInt(3) != 0) {
+			switch (random.nextInt(3)) {
+			case 0:
+				location = quote(states[random.nextInt(states.length)].name());
+				break;
+			case 1:
+				location = quote("near " + states[random.nextInt(states.length)].getAbbreviation().toUpperCase());
+				break;
+			default:
+				location = quote(CITIES[random.nextInt(CITIES.length)]);
+			}
+		}
+
+		StringBuilder line = new StringBuilder(512);
+		line.append("{\"created_at\":\"").append(dateFormat.format(new Date(timeMillis))).append("\",\"id\":")
+				.append(id).append(",\"id_str\":\"").append(id).append("\",\"text\":").append(quote(text))
+				.append(",\"source\":\"web\",\"truncated\":false,\"user\":{\"id\":").append(random.nextInt(100000))
+				.append(",\"screen_name\":\"user").append(random.nextInt(100000)).append("\",\"location\":")
+				.append(location).append(",\"followers_count\":").append(random.nextInt(5000))
+				.append("},\"geo\":null,\"coordinates\":").append(coordinates).append(",\"place\":").append(place)
+				.append(",\"retweet_count\":0,\"entities\":{\"hashtags\":[");
+		if (random.nextInt(4) == 0)
+			line.append("{\"text\":\"tag").append(random.nextInt(100)).append("\",\"indices\":[0,4]}");
+		line.append("],\"urls\":[");
+		if (random.nextInt(5) == 0)
+			line.append("{\"url\":\"http://t.co/").append(Long.toString(random.nextLong() & Long.MAX_VALUE, 36))
+					.append("\",\"indices\":[5,27]}");
+		line.append("],\"user_mentions\":[]},\"lang\":").append(lang).append(",\"timestamp_ms\":\"")
+				.append(timeMillis).append("\"}");
+		return line.toString();
+	}
+
+	private String sentence(String[] words) {
+		int length = 3 + random.nextInt(15);
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			if (i > 0)
+				text.append(' ');
+			text.append(words[random.nextInt(words.length)]);
+		}
+		if (random.nextInt(3) == 0)
+			text.append(random.nextBoolean() ? "!!" : " :)");
+		return text.toString();
+	}
+
+	/**
+	 * Quotes the string as a JSON string escaping non-ASCII characters like
+	 * Twitter does
+	 */
+	private static String quote(String s) {
+		StringBuilder quoted = new StringBuilder(s.length() + 2);
+		quoted.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			if (c == '"' || c == '\\')
+				quoted.append('\\').append(c);
+			else if (c < 0x20 || c > 0x7e)
+				quoted.append(String.format("\\u%04x", (int) c));
+			else
+				quoted.append(c);
+		}
+		return quoted.append('"').toString();
+	}
+
+	/**
+	 * Writes lines of the stream to the file
+	 * 
+	 * @param file
+	 *            output file
+	 * @param count
+	 *            number of lines
+	 * @throws IOException
+	 *             if the file can't be written
+	 */
+	public void write(File file, int count) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"), 1 << 16);
+		try {
+			for (int i = 0; i < count; i++) {
+				writer.write(nextLine());
+				writer.write("\r\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: SyntheticTweetGenerator <output-file> [tweets] [seed]");
+			System.exit(1);
+		}
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+		new SyntheticTweetGenerator(seed).write(new File(args[0]), count);
+	}
+}
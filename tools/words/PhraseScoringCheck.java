@@ -0,0 +1,40 @@
+package words;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Checks that phrase matching of {@link SentimentScorer} scores the longest
+ * phrase of the lexicon instead of the phrase and its words, e.g. that "no
+ * fun" scores -3 as the phrase and not 0 as the phrase, "no" and "fun". The
+ * expected scores are those of {@code AFINN-111.txt}.
+ * <p>
+ * Usage: {@code PhraseScoringCheck [lexicon]}
+ * 
+ */
+public class PhraseScoringCheck {
+
+	/** Checked texts */
+	private static final String[] TEXTS = { "not good", "no fun", "dont like", "Don't like it, NO FUN!",
+			"good fun", "no good fun", "not good not good" };
+
+	/** Expected scores of the texts */
+	private static final int[] SCORES = { -2, -3, -2, -5, 7, 6, -4 };
+
+	public static void main(String[] args) throws IOException {
+		WordsToSentimentBuilder.loadWordsSentiment(new File(args.length > 0 ? args[0] : "AFINN-111.txt"));
+		SentimentScorer scorer = new SentimentScorer(WordsToSentimentBuilder.getLexiconTrie());
+
+		boolean failed = false;
+		for (int i = 0; i < TEXTS.length; i++) {
+			int score = scorer.score(TEXTS[i]);
+			System.out.printf("%-24s %3d%n", '"' + TEXTS[i] + '"', score);
+			if (score != SCORES[i]) {
+				System.err.printf("\"%s\" scores %d instead of %d%n", TEXTS[i], score, SCORES[i]);
+				failed = true;
+			}
+		}
+		if (failed)
+			System.exit(1);
+	}
+}